@@ -14,8 +14,11 @@
 
 package org.httprpc;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -24,7 +27,9 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLEncoder;
@@ -43,6 +48,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Invocation proxy for HTTP-RPC web services.
@@ -53,6 +59,8 @@ public class WebServiceProxy {
         private String method;
         private String path;
         private Map<String, ?> arguments;
+        private Object body;
+        private Long deadline;
         private ResultHandler<V> resultHandler;
 
         private int c = EOF;
@@ -60,12 +68,22 @@ public class WebServiceProxy {
 
         private static final int EOF = -1;
 
+        private static final int BREAK = 0xff;
+        private static final long INDEFINITE_LENGTH = -1;
+
         private static final String POST_METHOD = "POST";
 
         private static final String ACCEPT_LANGUAGE_KEY = "Accept-Language";
 
+        private static final String ACCEPT_KEY = "Accept";
+        private static final String ACCEPT_VALUE = "application/cbor, application/json;q=0.9";
+        private static final String CBOR_MIME_TYPE = "application/cbor";
+
+        private static final String REQUEST_TIMEOUT_KEY = "Request-Timeout";
+
         private static final String CONTENT_TYPE_KEY = "Content-Type";
         private static final String MULTIPART_FORM_DATA_MIME_TYPE = "multipart/form-data";
+        private static final String JSON_MIME_TYPE = "application/json; charset=UTF-8";
         private static final String BOUNDARY_PARAMETER_FORMAT = "; boundary=%s";
 
         private static final String OCTET_STREAM_MIME_TYPE = "application/octet-stream";
@@ -82,11 +100,16 @@ public class WebServiceProxy {
 
         private static final String CHARSET_KEY = "charset";
 
-        public InvocationCallback(String method, String path, Map<String, ?> arguments, ResultHandler<V> resultHandler) {
+        public InvocationCallback(String method, String path, Map<String, ?> arguments, Object body, int timeout,
+            ResultHandler<V> resultHandler) {
             this.method = method;
             this.path = path;
             this.arguments = arguments;
+            this.body = body;
             this.resultHandler = resultHandler;
+
+            // Start the deadline when the call is submitted, so that it includes time spent waiting for the executor
+            deadline = (timeout > 0) ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : null;
         }
 
         @Override
@@ -161,6 +184,24 @@ public class WebServiceProxy {
             connection.setRequestMethod(method);
 
             connection.setConnectTimeout(connectTimeout);
+
+            int readTimeout = WebServiceProxy.this.readTimeout;
+
+            // Allow the server to abandon work once the caller has stopped waiting
+            if (deadline != null) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+
+                if (remaining <= 0) {
+                    throw new SocketTimeoutException("Deadline exceeded.");
+                }
+
+                connection.setRequestProperty(REQUEST_TIMEOUT_KEY, String.valueOf(remaining));
+
+                if (readTimeout == 0 || remaining < readTimeout) {
+                    readTimeout = (int)remaining;
+                }
+            }
+
             connection.setReadTimeout(readTimeout);
 
             // Set language
@@ -169,13 +210,26 @@ public class WebServiceProxy {
 
             connection.setRequestProperty(ACCEPT_LANGUAGE_KEY, acceptLanguage);
 
+            // Prefer binary responses
+            connection.setRequestProperty(ACCEPT_KEY, ACCEPT_VALUE);
+
             // Authenticate request
             if (authentication != null) {
                 authentication.authenticate(connection);
             }
 
             // Write request body
-            if (method.equalsIgnoreCase(POST_METHOD)) {
+            if (body != null) {
+                connection.setDoOutput(true);
+
+                connection.setRequestProperty(CONTENT_TYPE_KEY, JSON_MIME_TYPE);
+
+                try (OutputStream outputStream = new MonitoredOutputStream(connection.getOutputStream())) {
+                    try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(outputStream, Charset.forName(UTF_8_ENCODING)))) {
+                        writeValue(writer, body);
+                    }
+                }
+            } else if (method.equalsIgnoreCase(POST_METHOD)) {
                 connection.setDoOutput(true);
 
                 String boundary = UUID.randomUUID().toString();
@@ -252,15 +306,23 @@ public class WebServiceProxy {
 
             V result;
             if (responseCode / 100 == 2) {
-                String charsetName = getCharsetName(connection.getContentType());
+                String contentType = connection.getContentType();
 
-                if (charsetName == null) {
-                    charsetName = UTF_8_ENCODING;
-                }
+                if (contentType != null && contentType.startsWith(CBOR_MIME_TYPE)) {
+                    try (InputStream inputStream = new MonitoredInputStream(connection.getInputStream())) {
+                        result = readValue(new DataInputStream(new BufferedInputStream(inputStream)));
+                    }
+                } else {
+                    String charsetName = getCharsetName(contentType);
 
-                try (InputStream inputStream = new MonitoredInputStream(connection.getInputStream())) {
-                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, charsetName))) {
-                        result = readValue(reader);
+                    if (charsetName == null) {
+                        charsetName = UTF_8_ENCODING;
+                    }
+
+                    try (InputStream inputStream = new MonitoredInputStream(connection.getInputStream())) {
+                        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, charsetName))) {
+                            result = readValue(reader);
+                        }
                     }
                 }
             } else {
@@ -270,6 +332,86 @@ public class WebServiceProxy {
             return result;
         }
 
+        private void writeValue(Writer writer, Object value) throws IOException {
+            if (value == null) {
+                writer.append(NULL_KEYWORD);
+            } else if (value instanceof String) {
+                String string = (String)value;
+
+                writer.append("\"");
+
+                for (int i = 0, n = string.length(); i < n; i++) {
+                    char c = string.charAt(i);
+
+                    if (c == '"' || c == '\\') {
+                        writer.append("\\" + c);
+                    } else if (c == '\b') {
+                        writer.append("\\b");
+                    } else if (c == '\f') {
+                        writer.append("\\f");
+                    } else if (c == '\n') {
+                        writer.append("\\n");
+                    } else if (c == '\r') {
+                        writer.append("\\r");
+                    } else if (c == '\t') {
+                        writer.append("\\t");
+                    } else if (Character.isISOControl(c)) {
+                        writer.append(String.format("\\u%04x", (int)c));
+                    } else {
+                        writer.append(c);
+                    }
+                }
+
+                writer.append("\"");
+            } else if (value instanceof Number || value instanceof Boolean) {
+                writer.append(String.valueOf(value));
+            } else if (value instanceof List<?>) {
+                writer.append("[");
+
+                int i = 0;
+
+                for (Object element : (List<?>)value) {
+                    if (i > 0) {
+                        writer.append(",");
+                    }
+
+                    writeValue(writer, element);
+
+                    i++;
+                }
+
+                writer.append("]");
+            } else if (value instanceof Map<?, ?>) {
+                writer.append("{");
+
+                int i = 0;
+
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>)value).entrySet()) {
+                    Object key = entry.getKey();
+
+                    if (key == null) {
+                        continue;
+                    }
+
+                    if (i > 0) {
+                        writer.append(",");
+                    }
+
+                    writeValue(writer, key.toString());
+
+                    writer.append(":");
+
+                    writeValue(writer, entry.getValue());
+
+                    i++;
+                }
+
+                writer.append("}");
+            } else {
+                throw new IllegalArgumentException("Invalid argument value.");
+            }
+        }
+
         private String getCharsetName(String contentType) {
             String charsetName = null;
 
@@ -406,6 +548,175 @@ public class WebServiceProxy {
             return (V)value;
         }
 
+        @SuppressWarnings("unchecked")
+        private V readValue(DataInputStream inputStream) throws IOException {
+            int initialByte = inputStream.read();
+
+            if (initialByte == EOF) {
+                return null;
+            }
+
+            return (V)readValue(inputStream, initialByte);
+        }
+
+        private Object readValue(DataInputStream inputStream, int initialByte) throws IOException {
+            int majorType = initialByte >> 5;
+            int additionalInformation = initialByte & 0x1f;
+
+            Object value;
+            switch (majorType) {
+                case 0: {
+                    value = readArgument(inputStream, additionalInformation);
+                    break;
+                }
+
+                case 1: {
+                    value = -1 - readArgument(inputStream, additionalInformation);
+                    break;
+                }
+
+                case 2: {
+                    value = readBytes(inputStream, additionalInformation);
+                    break;
+                }
+
+                case 3: {
+                    value = new String(readBytes(inputStream, additionalInformation), UTF_8_ENCODING);
+                    break;
+                }
+
+                case 4: {
+                    long length = readArgument(inputStream, additionalInformation);
+
+                    ArrayList<Object> list = new ArrayList<>();
+
+                    if (length == INDEFINITE_LENGTH) {
+                        int b;
+                        while ((b = inputStream.readUnsignedByte()) != BREAK) {
+                            list.add(readValue(inputStream, b));
+                        }
+                    } else {
+                        for (long i = 0; i < length; i++) {
+                            list.add(readValue(inputStream, inputStream.readUnsignedByte()));
+                        }
+                    }
+
+                    value = list;
+                    break;
+                }
+
+                case 5: {
+                    long length = readArgument(inputStream, additionalInformation);
+
+                    HashMap<String, Object> map = new HashMap<>();
+
+                    if (length == INDEFINITE_LENGTH) {
+                        int b;
+                        while ((b = inputStream.readUnsignedByte()) != BREAK) {
+                            map.put(String.valueOf(readValue(inputStream, b)), readValue(inputStream, inputStream.readUnsignedByte()));
+                        }
+                    } else {
+                        for (long i = 0; i < length; i++) {
+                            map.put(String.valueOf(readValue(inputStream, inputStream.readUnsignedByte())), readValue(inputStream, inputStream.readUnsignedByte()));
+                        }
+                    }
+
+                    value = map;
+                    break;
+                }
+
+                case 6: {
+                    // Ignore tags
+                    readArgument(inputStream, additionalInformation);
+
+                    value = readValue(inputStream, inputStream.readUnsignedByte());
+                    break;
+                }
+
+                default: {
+                    if (additionalInformation == 20) {
+                        value = Boolean.FALSE;
+                    } else if (additionalInformation == 21) {
+                        value = Boolean.TRUE;
+                    } else if (additionalInformation == 22 || additionalInformation == 23) {
+                        value = null;
+                    } else if (additionalInformation == 25) {
+                        value = readHalfFloat(inputStream.readUnsignedShort());
+                    } else if (additionalInformation == 26) {
+                        value = (double)inputStream.readFloat();
+                    } else if (additionalInformation == 27) {
+                        value = inputStream.readDouble();
+                    } else {
+                        throw new IOException("Unsupported simple value.");
+                    }
+
+                    break;
+                }
+            }
+
+            return value;
+        }
+
+        private long readArgument(DataInputStream inputStream, int additionalInformation) throws IOException {
+            if (additionalInformation < 24) {
+                return additionalInformation;
+            } else if (additionalInformation == 24) {
+                return inputStream.readUnsignedByte();
+            } else if (additionalInformation == 25) {
+                return inputStream.readUnsignedShort();
+            } else if (additionalInformation == 26) {
+                return inputStream.readInt() & 0xffffffffL;
+            } else if (additionalInformation == 27) {
+                return inputStream.readLong();
+            } else if (additionalInformation == 31) {
+                return INDEFINITE_LENGTH;
+            } else {
+                throw new IOException("Invalid additional information.");
+            }
+        }
+
+        private byte[] readBytes(DataInputStream inputStream, int additionalInformation) throws IOException {
+            long length = readArgument(inputStream, additionalInformation);
+
+            if (length == INDEFINITE_LENGTH) {
+                // Concatenate definite-length chunks
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+                int b;
+                while ((b = inputStream.readUnsignedByte()) != BREAK) {
+                    outputStream.write(readBytes(inputStream, b & 0x1f));
+                }
+
+                return outputStream.toByteArray();
+            }
+
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Invalid length.");
+            }
+
+            byte[] bytes = new byte[(int)length];
+
+            inputStream.readFully(bytes);
+
+            return bytes;
+        }
+
+        private double readHalfFloat(int bits) {
+            int exponent = (bits >> 10) & 0x1f;
+            int mantissa = bits & 0x3ff;
+
+            double value;
+            if (exponent == 0) {
+                value = mantissa * Math.pow(2, -24);
+            } else if (exponent == 31) {
+                value = (mantissa == 0) ? Double.POSITIVE_INFINITY : Double.NaN;
+            } else {
+                value = (mantissa + 1024) * Math.pow(2, exponent - 25);
+            }
+
+            return ((bits & 0x8000) == 0) ? value : -value;
+        }
+
         private void skipWhitespace(Reader reader) throws IOException {
             while (c != EOF && Character.isWhitespace(c)) {
                 c = reader.read();
@@ -585,6 +896,8 @@ public class WebServiceProxy {
 
     private static final int PAGE_SIZE = 1024;
 
+    private static final String BATCH_METHOD = "POST";
+
     private static final String UTF_8_ENCODING = "UTF-8";
 
     /**
@@ -714,6 +1027,36 @@ public class WebServiceProxy {
      * A future representing the invocation request.
      */
     public <V> Future<V> invoke(String method, String path, Map<String, ?> arguments, ResultHandler<V> resultHandler) {
+        return invoke(method, path, arguments, 0, resultHandler);
+    }
+
+    /**
+     * Executes a service operation with a deadline.
+     *
+     * @param <V> The type of the value returned by the operation.
+     *
+     * @param method
+     * The HTTP verb associated with the request.
+     *
+     * @param path
+     * The path associated with the request.
+     *
+     * @param arguments
+     * The request arguments.
+     *
+     * @param timeout
+     * The number of milliseconds after which the caller will stop waiting
+     * for the result, measured from the time the operation is submitted, or
+     * 0 for no deadline. The time remaining when the request is sent is
+     * reported to the server, and also bounds the read timeout.
+     *
+     * @param resultHandler
+     * A callback that will be invoked upon completion of the request.
+     *
+     * @return
+     * A future representing the invocation request.
+     */
+    public <V> Future<V> invoke(String method, String path, Map<String, ?> arguments, int timeout, ResultHandler<V> resultHandler) {
         if (method == null) {
             throw new IllegalArgumentException();
         }
@@ -726,11 +1069,110 @@ public class WebServiceProxy {
             throw new IllegalArgumentException();
         }
 
+        if (timeout < 0) {
+            throw new IllegalArgumentException();
+        }
+
         if (resultHandler == null) {
             throw new IllegalArgumentException();
         }
 
-        return executorService.submit(new InvocationCallback<>(method, path, arguments, resultHandler));
+        return executorService.submit(new InvocationCallback<>(method, path, arguments, null, timeout, resultHandler));
+    }
+
+    /**
+     * Executes a batch of service operations in a single request.
+     *
+     * @param path
+     * The path of the server's batch endpoint.
+     *
+     * @param calls
+     * The calls to execute, as created by {@link #call(String, String, Map)}.
+     *
+     * @param resultHandler
+     * A callback that will be invoked upon completion of the request. The
+     * result contains one entry per call, in call order. Each entry provides
+     * the HTTP status of the call in its "status" property and the call's
+     * return value, if any, in its "result" property.
+     *
+     * @return
+     * A future representing the invocation request.
+     */
+    public Future<List<Map<String, ?>>> batch(String path, List<Map<String, ?>> calls, ResultHandler<List<Map<String, ?>>> resultHandler) {
+        return batch(path, calls, 0, resultHandler);
+    }
+
+    /**
+     * Executes a batch of service operations in a single request with a
+     * deadline.
+     *
+     * @param path
+     * The path of the server's batch endpoint.
+     *
+     * @param calls
+     * The calls to execute, as created by {@link #call(String, String, Map)}.
+     *
+     * @param timeout
+     * The number of milliseconds after which the caller will stop waiting
+     * for the results, or 0 for no deadline.
+     *
+     * @param resultHandler
+     * A callback that will be invoked upon completion of the request.
+     *
+     * @return
+     * A future representing the invocation request.
+     */
+    public Future<List<Map<String, ?>>> batch(String path, List<Map<String, ?>> calls, int timeout,
+        ResultHandler<List<Map<String, ?>>> resultHandler) {
+        if (path == null) {
+            throw new IllegalArgumentException();
+        }
+
+        if (calls == null) {
+            throw new IllegalArgumentException();
+        }
+
+        if (timeout < 0) {
+            throw new IllegalArgumentException();
+        }
+
+        if (resultHandler == null) {
+            throw new IllegalArgumentException();
+        }
+
+        return executorService.submit(new InvocationCallback<>(BATCH_METHOD, path, Collections.<String, Object>emptyMap(), calls, timeout,
+            resultHandler));
+    }
+
+    /**
+     * Creates a batch call.
+     *
+     * @param method
+     * The HTTP verb associated with the call.
+     *
+     * @param path
+     * The path associated with the call.
+     *
+     * @param arguments
+     * The call arguments.
+     *
+     * @return
+     * An immutable map representing the call.
+     */
+    public static Map<String, ?> call(String method, String path, Map<String, ?> arguments) {
+        if (method == null) {
+            throw new IllegalArgumentException();
+        }
+
+        if (path == null) {
+            throw new IllegalArgumentException();
+        }
+
+        if (arguments == null) {
+            throw new IllegalArgumentException();
+        }
+
+        return mapOf(entry("method", method), entry("path", path), entry("arguments", arguments));
     }
 
     /**
@@ -0,0 +1,109 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deadline and load-shedding policy shared by the servlet and the embedded
+ * server. A request that cannot be admitted within its handler's concurrency
+ * limit is rejected with 503, and a request whose caller has stopped waiting
+ * is answered with 504.
+ */
+class AdmissionControl {
+    public static final String REQUEST_TIMEOUT_HEADER = "Request-Timeout";
+    public static final String RETRY_AFTER_HEADER = "Retry-After";
+
+    public static final int SERVICE_UNAVAILABLE = 503;
+    public static final int GATEWAY_TIMEOUT = 504;
+
+    /**
+     * Returns the time after which the caller will no longer be waiting, or
+     * <tt>null</tt> if the request does not specify a valid timeout.
+     */
+    public static Long getDeadline(String requestTimeout, long startTime) {
+        if (requestTimeout == null) {
+            return null;
+        }
+
+        long timeout;
+        try {
+            timeout = Long.parseLong(requestTimeout.trim());
+        } catch (NumberFormatException exception) {
+            return null;
+        }
+
+        if (timeout <= 0) {
+            return null;
+        }
+
+        return startTime + TimeUnit.MILLISECONDS.toNanos(timeout);
+    }
+
+    public static boolean hasExpired(Long deadline) {
+        return (deadline != null && System.nanoTime() - deadline > 0);
+    }
+
+    /**
+     * Returns the status of a request that gave up waiting for a result.
+     */
+    public static int getTimeoutStatus(Long deadline) {
+        return hasExpired(deadline) ? GATEWAY_TIMEOUT : SERVICE_UNAVAILABLE;
+    }
+
+    /**
+     * Waits for the handler's concurrency limit to admit a request. Requests
+     * that are not admitted should be rejected with 503 and a
+     * <tt>Retry-After</tt> header.
+     */
+    public static boolean acquire(Handler handler) {
+        if (handler.concurrencyLimiter == null) {
+            return true;
+        }
+
+        try {
+            return handler.concurrencyLimiter.acquire(handler.concurrencyLimit.queueTimeout());
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+
+            return false;
+        }
+    }
+
+    /**
+     * Releases a request admitted by {@link #acquire(Handler)}. Only the
+     * invocation and serialization of the result are sampled, and requests
+     * that expire at the caller's deadline or never reach the handler method
+     * are released without a sample, since they say nothing about its
+     * capacity.
+     */
+    public static void release(Handler handler, RequestTiming requestTiming, int status, boolean failed, Long deadline) {
+        if (handler.concurrencyLimiter == null) {
+            return;
+        }
+
+        boolean error = failed || status >= 500;
+
+        if (status == GATEWAY_TIMEOUT || (failed && hasExpired(deadline))
+            || (!error && !requestTiming.hasEnded(RequestTiming.Phase.INVOKE))) {
+            handler.concurrencyLimiter.release();
+        } else {
+            long executionTime = requestTiming.getDuration(RequestTiming.Phase.INVOKE)
+                + requestTiming.getDuration(RequestTiming.Phase.SERIALIZE);
+
+            handler.concurrencyLimiter.release(executionTime, !error);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.httprpc.beans.BeanAdapter;
+
+/**
+ * Binds request arguments to method parameters.
+ */
+abstract class ArgumentBinder {
+    // Invalid structure exception
+    static class InvalidStructureException extends IllegalArgumentException {
+        private static final long serialVersionUID = 0;
+
+        public InvalidStructureException(String message) {
+            super(message);
+        }
+
+        public InvalidStructureException(Throwable cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+
+    // Single value binder
+    static class ValueBinder extends ArgumentBinder {
+        private ArgumentConverter converter;
+
+        public ValueBinder(ArgumentConverter converter) {
+            this.converter = converter;
+        }
+
+        @Override
+        public Object bind(RequestArguments arguments, String name) {
+            return converter.convert(toString(arguments.getValue(name)));
+        }
+    }
+
+    // List binder
+    static class ListBinder extends ArgumentBinder {
+        private ArgumentConverter elementConverter;
+
+        public ListBinder(ArgumentConverter elementConverter) {
+            this.elementConverter = elementConverter;
+        }
+
+        @Override
+        public Object bind(RequestArguments arguments, String name) {
+            Object values = arguments.getValues(name);
+
+            if (values == null) {
+                return Collections.emptyList();
+            }
+
+            ArrayList<Object> list;
+            if (values instanceof String[]) {
+                String[] array = (String[])values;
+
+                list = new ArrayList<>(array.length);
+
+                for (int i = 0; i < array.length; i++) {
+                    list.add(elementConverter.convert(array[i]));
+                }
+            } else if (values instanceof List<?>) {
+                List<?> elements = (List<?>)values;
+
+                list = new ArrayList<>(elements.size());
+
+                for (Object element : elements) {
+                    list.add(elementConverter.convert(toString(element)));
+                }
+            } else {
+                list = new ArrayList<>(1);
+
+                list.add(elementConverter.convert(toString(values)));
+            }
+
+            return list;
+        }
+    }
+
+    // Primitive array binder
+    static class ArrayBinder extends ArgumentBinder {
+        private Class<?> componentType;
+
+        public ArrayBinder(Class<?> componentType) {
+            this.componentType = componentType;
+        }
+
+        @Override
+        public Object bind(RequestArguments arguments, String name) {
+            // Report non-numeric and out-of-range elements as client errors rather than handler failures
+            try {
+                return toArray(arguments.getValues(name));
+            } catch (NumberFormatException exception) {
+                throw new InvalidStructureException(exception);
+            }
+        }
+
+        private Object toArray(Object values) {
+            // Copy decoded numeric arrays without boxing
+            if (values instanceof JSONDecoder.NumberList) {
+                JSONDecoder.NumberList numberList = (JSONDecoder.NumberList)values;
+
+                if (componentType == Double.TYPE) {
+                    return numberList.toDoubleArray();
+                } else if (componentType == Long.TYPE) {
+                    return numberList.toLongArray();
+                } else if (componentType == Integer.TYPE) {
+                    return numberList.toIntArray();
+                }
+            }
+
+            String[] array;
+            if (values == null) {
+                array = new String[0];
+            } else if (values instanceof String[]) {
+                array = (String[])values;
+            } else if (values instanceof List<?>) {
+                List<?> elements = (List<?>)values;
+
+                array = new String[elements.size()];
+
+                int i = 0;
+
+                for (Object element : elements) {
+                    array[i++] = toString(element);
+                }
+            } else {
+                array = new String[] {toString(values)};
+            }
+
+            int n = array.length;
+
+            Object argument;
+            if (componentType == Double.TYPE) {
+                double[] doubleArray = new double[n];
+
+                for (int i = 0; i < n; i++) {
+                    doubleArray[i] = Double.parseDouble(array[i]);
+                }
+
+                argument = doubleArray;
+            } else if (componentType == Long.TYPE) {
+                long[] longArray = new long[n];
+
+                for (int i = 0; i < n; i++) {
+                    longArray[i] = Long.parseLong(array[i]);
+                }
+
+                argument = longArray;
+            } else if (componentType == Integer.TYPE) {
+                int[] intArray = new int[n];
+
+                for (int i = 0; i < n; i++) {
+                    intArray[i] = Integer.parseInt(array[i]);
+                }
+
+                argument = intArray;
+            } else {
+                boolean[] booleanArray = new boolean[n];
+
+                for (int i = 0; i < n; i++) {
+                    booleanArray[i] = Boolean.parseBoolean(array[i]);
+                }
+
+                argument = booleanArray;
+            }
+
+            return argument;
+        }
+    }
+
+    // Structured value binder
+    static class StructureBinder extends ArgumentBinder {
+        private Type type;
+
+        public StructureBinder(Type type) {
+            this.type = type;
+        }
+
+        @Override
+        public Object bind(RequestArguments arguments, String name) {
+            Object value = arguments.getValue(name);
+
+            if (value instanceof String) {
+                throw new InvalidStructureException("Invalid value.");
+            }
+
+            // Report malformed structures as client errors rather than handler failures
+            try {
+                return BeanAdapter.adapt(value, type);
+            } catch (RuntimeException exception) {
+                throw new InvalidStructureException(exception);
+            }
+        }
+    }
+
+    // File binder
+    static class FileBinder extends ArgumentBinder {
+        @Override
+        public Object bind(RequestArguments arguments, String name) throws IOException {
+            return arguments.getFile(name);
+        }
+    }
+
+    // File list binder
+    static class FileListBinder extends ArgumentBinder {
+        @Override
+        public Object bind(RequestArguments arguments, String name) throws IOException {
+            return arguments.getFiles(name);
+        }
+    }
+
+    public abstract Object bind(RequestArguments arguments, String name) throws IOException;
+
+    protected static String toString(Object value) {
+        if (value instanceof List<?> || value instanceof Map<?, ?>) {
+            throw new InvalidStructureException("Invalid value.");
+        }
+
+        return (value == null) ? null : value.toString();
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.httprpc;
+
+/**
+ * Service provider interface for supplying argument converters for
+ * additional parameter types.
+ * <p>
+ * Providers are discovered via {@link java.util.ServiceLoader} when a service
+ * is published, and take precedence over the built-in converters.
+ */
+public interface ArgumentConverterProvider {
+    /**
+     * Returns a converter for a parameter type.
+     *
+     * @param type
+     * The parameter type.
+     *
+     * @return
+     * A converter for the given type, or <tt>null</tt> if the type is not
+     * supported by this provider.
+     */
+    public ArgumentConverter getConverter(Class<?> type);
+}
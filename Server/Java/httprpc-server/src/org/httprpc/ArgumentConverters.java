@@ -0,0 +1,263 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.httprpc;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Resolves argument converters for parameter types.
+ */
+class ArgumentConverters {
+    // Enum converter
+    private static class EnumConverter implements ArgumentConverter {
+        private HashMap<String, Object> constants = new HashMap<>();
+
+        public EnumConverter(Class<?> type) {
+            Object[] enumConstants = type.getEnumConstants();
+
+            for (int i = 0; i < enumConstants.length; i++) {
+                Object constant = enumConstants[i];
+
+                constants.put(((Enum<?>)constant).name(), constant);
+            }
+        }
+
+        @Override
+        public Object convert(String value) {
+            if (value == null) {
+                return null;
+            }
+
+            Object constant = constants.get(value);
+
+            if (constant == null) {
+                throw new IllegalArgumentException("Invalid constant name.");
+            }
+
+            return constant;
+        }
+    }
+
+    private List<ArgumentConverterProvider> providers;
+
+    private static final HashMap<Class<?>, ArgumentConverter> converters = new HashMap<>();
+
+    static {
+        converters.put(String.class, new ArgumentConverter() {
+            @Override
+            public Object convert(String value) {
+                return value;
+            }
+        });
+
+        converters.put(Byte.TYPE, new ArgumentConverter() {
+            @Override
+            public Object convert(String value) {
+                return (value == null) ? 0 : Byte.parseByte(value);
+            }
+        });
+
+        converters.put(Byte.class, new ArgumentConverter() {
+            @Override
+            public Object convert(String value) {
+                return (value == null) ? null : Byte.parseByte(value);
+            }
+        });
+
+        converters.put(Short.TYPE, new ArgumentConverter() {
+            @Override
+            public Object convert(String value) {
+                return (value == null) ? 0 : Short.parseShort(value);
+            }
+        });
+
+        converters.put(Short.class, new ArgumentConverter() {
+            @Override
+            public Object convert(String value) {
+                return (value == null) ? null : Short.parseShort(value);
+            }
+        });
+
+        converters.put(Integer.TYPE, new ArgumentConverter() {
+            @Override
+            public Object convert(String value) {
+                return (value == null) ? 0 : Integer.parseInt(value);
+            }
+        });
+
+        converters.put(Integer.class, new ArgumentConverter() {
+            @Override
+            public Object convert(String value) {
+                return (value == null) ? null : Integer.parseInt(value);
+            }
+        });
+
+        converters.put(Long.TYPE, new ArgumentConverter() {
+            @Override
+            public Object convert(String value) {
+                return (value == null) ? 0 : Long.parseLong(value);
+            }
+        });
+
+        converters.put(Long.class, new ArgumentConverter() {
+            @Override
+            public Object convert(String value) {
+                return (value == null) ? null : Long.parseLong(value);
+            }
+        });
+
+        converters.put(Float.TYPE, new ArgumentConverter() {
+            @Override
+            public Object convert(String value) {
+                return (value == null) ? 0 : Float.parseFloat(value);
+            }
+        });
+
+        converters.put(Float.class, new ArgumentConverter() {
+            @Override
+            public Object convert(String value) {
+                return (value == null) ? null : Float.parseFloat(value);
+            }
+        });
+
+        converters.put(Double.TYPE, new ArgumentConverter() {
+            @Override
+            public Object convert(String value) {
+                return (value == null) ? 0 : Double.parseDouble(value);
+            }
+        });
+
+        converters.put(Double.class, new ArgumentConverter() {
+            @Override
+            public Object convert(String value) {
+                return (value == null) ? null : Double.parseDouble(value);
+            }
+        });
+
+        converters.put(Boolean.TYPE, new ArgumentConverter() {
+            @Override
+            public Object convert(String value) {
+                return (value == null) ? false : Boolean.parseBoolean(value);
+            }
+        });
+
+        converters.put(Boolean.class, new ArgumentConverter() {
+            @Override
+            public Object convert(String value) {
+                return (value == null) ? null : Boolean.parseBoolean(value);
+            }
+        });
+
+        converters.put(BigDecimal.class, new ArgumentConverter() {
+            @Override
+            public Object convert(String value) {
+                return (value == null) ? null : new BigDecimal(value);
+            }
+        });
+
+        converters.put(BigInteger.class, new ArgumentConverter() {
+            @Override
+            public Object convert(String value) {
+                return (value == null) ? null : new BigInteger(value);
+            }
+        });
+
+        converters.put(UUID.class, new ArgumentConverter() {
+            @Override
+            public Object convert(String value) {
+                return (value == null) ? null : UUID.fromString(value);
+            }
+        });
+
+        converters.put(LocalDate.class, new ArgumentConverter() {
+            @Override
+            public Object convert(String value) {
+                return (value == null) ? null : LocalDate.parse(value);
+            }
+        });
+
+        converters.put(LocalTime.class, new ArgumentConverter() {
+            @Override
+            public Object convert(String value) {
+                return (value == null) ? null : LocalTime.parse(value);
+            }
+        });
+
+        converters.put(LocalDateTime.class, new ArgumentConverter() {
+            @Override
+            public Object convert(String value) {
+                return (value == null) ? null : LocalDateTime.parse(value);
+            }
+        });
+
+        converters.put(OffsetDateTime.class, new ArgumentConverter() {
+            @Override
+            public Object convert(String value) {
+                return (value == null) ? null : OffsetDateTime.parse(value);
+            }
+        });
+
+        converters.put(ZonedDateTime.class, new ArgumentConverter() {
+            @Override
+            public Object convert(String value) {
+                return (value == null) ? null : ZonedDateTime.parse(value);
+            }
+        });
+
+        converters.put(Instant.class, new ArgumentConverter() {
+            @Override
+            public Object convert(String value) {
+                return (value == null) ? null : Instant.parse(value);
+            }
+        });
+
+        converters.put(Duration.class, new ArgumentConverter() {
+            @Override
+            public Object convert(String value) {
+                return (value == null) ? null : Duration.parse(value);
+            }
+        });
+    }
+
+    public ArgumentConverters(List<ArgumentConverterProvider> providers) {
+        this.providers = providers;
+    }
+
+    public ArgumentConverter getConverter(Class<?> type) {
+        for (ArgumentConverterProvider provider : providers) {
+            ArgumentConverter converter = provider.getConverter(type);
+
+            if (converter != null) {
+                return converter;
+            }
+        }
+
+        if (type.isEnum()) {
+            return new EnumConverter(type);
+        }
+
+        return converters.get(type);
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Response encoder that produces CBOR (RFC 8949).
+ */
+class CBOREncoder implements ResponseEncoder {
+    private static final int UNSIGNED_INTEGER = 0;
+    private static final int NEGATIVE_INTEGER = 1;
+    private static final int TEXT_STRING = 3;
+    private static final int ARRAY = 4;
+    private static final int MAP = 5;
+
+    private static final int FALSE = 0xf4;
+    private static final int TRUE = 0xf5;
+    private static final int NULL = 0xf6;
+    private static final int FLOAT32 = 0xfa;
+    private static final int FLOAT64 = 0xfb;
+    private static final int BREAK = 0xff;
+
+    private static final int INDEFINITE_LENGTH = 31;
+
+    private int flushInterval;
+
+    public CBOREncoder() {
+        this(0);
+    }
+
+    public CBOREncoder(int flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    @Override
+    public String getContentType() {
+        return "application/cbor";
+    }
+
+    @Override
+    public void writeValue(Object value, OutputStream outputStream) throws IOException {
+        DataOutputStream dataOutputStream = new DataOutputStream(new BufferedOutputStream(outputStream));
+
+        writeValue(dataOutputStream, value, true);
+
+        dataOutputStream.flush();
+    }
+
+    private void writeValue(DataOutputStream outputStream, Object value, boolean outermost) throws IOException {
+        if (value == null) {
+            outputStream.write(NULL);
+        } else if (value instanceof CharSequence) {
+            byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+
+            writeHead(outputStream, TEXT_STRING, bytes.length);
+
+            outputStream.write(bytes);
+        } else if (value instanceof Boolean) {
+            outputStream.write((Boolean)value ? TRUE : FALSE);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            writeInteger(outputStream, ((Number)value).longValue());
+        } else if (value instanceof BigInteger && ((BigInteger)value).bitLength() < 64) {
+            writeInteger(outputStream, ((BigInteger)value).longValue());
+        } else if (value instanceof Float) {
+            outputStream.write(FLOAT32);
+            outputStream.writeFloat((Float)value);
+        } else if (value instanceof Number) {
+            outputStream.write(FLOAT64);
+            outputStream.writeDouble(((Number)value).doubleValue());
+        } else if (value instanceof double[]) {
+            double[] array = (double[])value;
+
+            writeHead(outputStream, ARRAY, array.length);
+
+            for (int i = 0; i < array.length; i++) {
+                outputStream.write(FLOAT64);
+                outputStream.writeDouble(array[i]);
+            }
+        } else if (value instanceof long[]) {
+            long[] array = (long[])value;
+
+            writeHead(outputStream, ARRAY, array.length);
+
+            for (int i = 0; i < array.length; i++) {
+                writeInteger(outputStream, array[i]);
+            }
+        } else if (value instanceof int[]) {
+            int[] array = (int[])value;
+
+            writeHead(outputStream, ARRAY, array.length);
+
+            for (int i = 0; i < array.length; i++) {
+                writeInteger(outputStream, array[i]);
+            }
+        } else if (value instanceof boolean[]) {
+            boolean[] array = (boolean[])value;
+
+            writeHead(outputStream, ARRAY, array.length);
+
+            for (int i = 0; i < array.length; i++) {
+                outputStream.write(array[i] ? TRUE : FALSE);
+            }
+        } else if (value instanceof List<?>) {
+            List<?> list = (List<?>)value;
+
+            try {
+                // Lists that are not random-access may not know their size in advance
+                boolean definite = (list instanceof RandomAccess);
+
+                if (definite) {
+                    writeHead(outputStream, ARRAY, list.size());
+                } else {
+                    outputStream.write((ARRAY << 5) | INDEFINITE_LENGTH);
+                }
+
+                int i = 0;
+
+                for (Object element : list) {
+                    writeValue(outputStream, element, false);
+
+                    i++;
+
+                    // Push streamed content to the client, which also detects disconnection promptly; only
+                    // the outermost list is counted, so that nested lists do not flush on every element
+                    if (outermost && flushInterval > 0 && (i == 1 || i % flushInterval == 0)) {
+                        outputStream.flush();
+                    }
+                }
+
+                if (!definite) {
+                    outputStream.write(BREAK);
+                }
+            } finally {
+                RequestTiming.close(list);
+            }
+        } else if (value instanceof Map<?, ?>) {
+            Map<?, ?> map = (Map<?, ?>)value;
+
+            try {
+                outputStream.write((MAP << 5) | INDEFINITE_LENGTH);
+
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    Object key = entry.getKey();
+
+                    if (!(key instanceof String)) {
+                        throw new IOException("Invalid key type.");
+                    }
+
+                    writeValue(outputStream, key, false);
+                    writeValue(outputStream, entry.getValue(), outermost);
+                }
+
+                outputStream.write(BREAK);
+            } finally {
+                RequestTiming.close(map);
+            }
+        } else {
+            throw new IOException("Invalid value type.");
+        }
+    }
+
+    private static void writeInteger(DataOutputStream outputStream, long value) throws IOException {
+        if (value < 0) {
+            // Negative integers are encoded as -1 - n
+            writeHead(outputStream, NEGATIVE_INTEGER, -1 - value);
+        } else {
+            writeHead(outputStream, UNSIGNED_INTEGER, value);
+        }
+    }
+
+    private static void writeHead(DataOutputStream outputStream, int majorType, long argument) throws IOException {
+        int initialByte = majorType << 5;
+
+        if (argument < 24) {
+            outputStream.write(initialByte | (int)argument);
+        } else if (argument < 0x100) {
+            outputStream.write(initialByte | 24);
+            outputStream.write((int)argument);
+        } else if (argument < 0x10000) {
+            outputStream.write(initialByte | 25);
+            outputStream.writeShort((int)argument);
+        } else if (argument < 0x100000000L) {
+            outputStream.write(initialByte | 26);
+            outputStream.writeInt((int)argument);
+        } else {
+            outputStream.write(initialByte | 27);
+            outputStream.writeLong(argument);
+        }
+    }
+}
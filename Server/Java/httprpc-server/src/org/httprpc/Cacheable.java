@@ -0,0 +1,48 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation that indicates that the serialized responses of a GET method
+ * may be cached by the server.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Cacheable {
+    /**
+     * @return
+     * The number of seconds for which a cached response remains valid.
+     */
+    public long ttl();
+
+    /**
+     * @return
+     * The maximum number of responses retained by the cache. When the limit
+     * is reached, the least recently used response is discarded.
+     */
+    public int maxEntries() default 1000;
+
+    /**
+     * @return
+     * <tt>true</tt> if responses are cached separately for each user;
+     * <tt>false</tt> if they are shared by all users.
+     */
+    public boolean perUser() default true;
+}
@@ -0,0 +1,179 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Output stream that compresses its content using the "gzip" or "deflate"
+ * content encoding once the content exceeds a given size.
+ */
+abstract class CompressedOutputStream extends OutputStream {
+    private OutputStream outputStream;
+    private boolean gzip;
+    private DeflaterPool deflaterPool;
+
+    private byte[] buffer;
+    private int count = 0;
+
+    private Deflater deflater = null;
+    private DeflaterOutputStream deflaterOutputStream = null;
+    private CRC32 crc = null;
+
+    private boolean closed = false;
+
+    public static final String GZIP_ENCODING = "gzip";
+    public static final String DEFLATE_ENCODING = "deflate";
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte)0xff};
+
+    private static final int BUFFER_SIZE = 8192;
+
+    public CompressedOutputStream(OutputStream outputStream, String encoding, int threshold, DeflaterPool deflaterPool) {
+        this.outputStream = outputStream;
+        this.deflaterPool = deflaterPool;
+
+        gzip = encoding.equals(GZIP_ENCODING);
+
+        buffer = new byte[threshold];
+    }
+
+    /**
+     * Called before the first compressed byte is written.
+     */
+    protected abstract void compressionStarted();
+
+    /**
+     * Called when the stream is closed before the threshold was reached.
+     *
+     * @param length
+     * The length of the uncompressed content.
+     */
+    protected abstract void compressionSkipped(int length);
+
+    @Override
+    public void write(int b) throws IOException {
+        if (deflaterOutputStream == null && count < buffer.length) {
+            buffer[count++] = (byte)b;
+        } else {
+            write(new byte[] {(byte)b}, 0, 1);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed.");
+        }
+
+        if (deflaterOutputStream == null) {
+            if (count + len <= buffer.length) {
+                System.arraycopy(b, off, buffer, count, len);
+
+                count += len;
+
+                return;
+            }
+
+            start();
+        }
+
+        if (crc != null) {
+            crc.update(b, off, len);
+        }
+
+        deflaterOutputStream.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        // An explicit flush indicates a streamed response, so begin compressing
+        if (!closed && deflaterOutputStream == null && count > 0) {
+            start();
+        }
+
+        if (deflaterOutputStream != null) {
+            deflaterOutputStream.flush();
+        } else {
+            outputStream.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        if (deflaterOutputStream == null) {
+            compressionSkipped(count);
+
+            outputStream.write(buffer, 0, count);
+            outputStream.flush();
+
+            return;
+        }
+
+        try {
+            deflaterOutputStream.finish();
+
+            if (gzip) {
+                writeInt((int)crc.getValue());
+                writeInt((int)deflater.getBytesRead());
+            }
+
+            outputStream.flush();
+        } finally {
+            deflaterPool.release(deflater);
+
+            deflater = null;
+        }
+    }
+
+    private void start() throws IOException {
+        compressionStarted();
+
+        deflater = deflaterPool.acquire();
+        deflaterOutputStream = new DeflaterOutputStream(outputStream, deflater, BUFFER_SIZE, true);
+
+        byte[] content = buffer;
+        int length = count;
+
+        buffer = null;
+        count = 0;
+
+        if (gzip) {
+            crc = new CRC32();
+
+            outputStream.write(GZIP_HEADER);
+        }
+
+        write(content, 0, length);
+    }
+
+    private void writeInt(int value) throws IOException {
+        // GZIP trailer values are little-endian
+        outputStream.write(value & 0xff);
+        outputStream.write((value >> 8) & 0xff);
+        outputStream.write((value >> 16) & 0xff);
+        outputStream.write((value >> 24) & 0xff);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation that limits the number of concurrent executions of a method.
+ * Requests that exceed the limit wait briefly for an execution to complete,
+ * and are otherwise rejected with 503 (Service Unavailable).
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ConcurrencyLimit {
+    /**
+     * @return
+     * The maximum number of concurrent executions.
+     */
+    public int value();
+
+    /**
+     * @return
+     * <tt>true</tt> if the limit should be adjusted based on observed
+     * latency, between 1 and {@link #value()}; <tt>false</tt> if it is fixed.
+     */
+    public boolean adaptive() default false;
+
+    /**
+     * @return
+     * The number of milliseconds a request may wait for an execution to
+     * complete before it is rejected.
+     */
+    public long queueTimeout() default 50;
+
+    /**
+     * @return
+     * The number of seconds after which a rejected caller may retry, as
+     * reported by the <tt>Retry-After</tt> header.
+     */
+    public int retryAfter() default 1;
+}
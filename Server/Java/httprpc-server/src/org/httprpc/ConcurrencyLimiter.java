@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrency limiter. An adaptive limiter applies additive increase and
+ * multiplicative decrease: the limit grows while executions complete within
+ * a tolerance of the lowest recently observed latency, and shrinks when they
+ * take longer or fail, bounding the amount of work queued behind a slow
+ * dependency. The limit is reduced at most once per window of executions
+ * that were already in flight when it was last reduced, since those
+ * executions were admitted under the old limit.
+ */
+class ConcurrencyLimiter {
+    private int maxLimit;
+    private boolean adaptive;
+
+    private double limit;
+    private int inFlight = 0;
+
+    private long minLatency = Long.MAX_VALUE;
+    private long windowMinLatency = Long.MAX_VALUE;
+    private int windowCount = 0;
+
+    private int backoffCount = 0;
+
+    private static final int WINDOW_SIZE = 100;
+
+    private static final double TOLERANCE = 2.0;
+    private static final double BACKOFF_RATIO = 0.9;
+
+    public ConcurrencyLimiter(int maxLimit, boolean adaptive) {
+        if (maxLimit <= 0) {
+            throw new IllegalArgumentException();
+        }
+
+        this.maxLimit = maxLimit;
+        this.adaptive = adaptive;
+
+        limit = maxLimit;
+    }
+
+    public synchronized boolean acquire(long timeout) throws InterruptedException {
+        if (inFlight >= (int)limit) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+            do {
+                long remaining = deadline - System.nanoTime();
+
+                if (remaining <= 0) {
+                    return false;
+                }
+
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            } while (inFlight >= (int)limit);
+        }
+
+        inFlight++;
+
+        return true;
+    }
+
+    public synchronized void release(long latency, boolean success) {
+        if (adaptive) {
+            // Only successful executions describe the dependency's baseline latency
+            if (success) {
+                // Periodically re-establish the baseline so that it can follow a permanent change in latency
+                windowMinLatency = Math.min(windowMinLatency, latency);
+
+                if (++windowCount == WINDOW_SIZE) {
+                    minLatency = windowMinLatency;
+
+                    windowMinLatency = Long.MAX_VALUE;
+                    windowCount = 0;
+                } else {
+                    minLatency = Math.min(minLatency, latency);
+                }
+            }
+
+            if (!success || latency > minLatency * TOLERANCE) {
+                if (backoffCount == 0) {
+                    limit = Math.max(limit * BACKOFF_RATIO, 1);
+
+                    // Ignore the other executions that were admitted under the previous limit
+                    backoffCount = inFlight;
+                }
+            } else if (inFlight * 2 >= limit) {
+                // Grow only when the limit is actually being used
+                limit = Math.min(limit + 1 / limit, maxLimit);
+            }
+        }
+
+        release();
+    }
+
+    /**
+     * Releases an execution without contributing a sample, for executions
+     * whose outcome says nothing about the capacity of the dependency.
+     */
+    public synchronized void release() {
+        if (backoffCount > 0) {
+            backoffCount--;
+        }
+
+        inFlight--;
+
+        notifyAll();
+    }
+
+    public synchronized int getLimit() {
+        return (int)limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
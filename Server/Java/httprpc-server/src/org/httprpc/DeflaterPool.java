@@ -0,0 +1,54 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Pool of reusable deflaters.
+ */
+class DeflaterPool {
+    private int level;
+    private boolean nowrap;
+
+    private ArrayBlockingQueue<Deflater> deflaters;
+
+    public DeflaterPool(int level, boolean nowrap, int capacity) {
+        this.level = level;
+        this.nowrap = nowrap;
+
+        deflaters = new ArrayBlockingQueue<>(capacity);
+    }
+
+    public Deflater acquire() {
+        Deflater deflater = deflaters.poll();
+
+        if (deflater == null) {
+            deflater = new Deflater(level, nowrap);
+        }
+
+        return deflater;
+    }
+
+    public void release(Deflater deflater) {
+        deflater.reset();
+
+        // Free the native resources of deflaters that do not fit in the pool
+        if (!deflaters.offer(deflater)) {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Java Flight Recorder event emitted by the framework. Event types are
+ * defined at runtime, so events are simply discarded when the Java runtime
+ * does not provide Flight Recorder support (Java 11 and later). When no
+ * recording is in progress, {@link #begin()} returns <tt>null</tt> without
+ * allocating an event.
+ */
+class FlightRecorderEvent {
+    private MethodHandle isEnabled = null;
+    private MethodHandle newEvent = null;
+
+    private static final String CATEGORY = "HTTP-RPC";
+
+    private static MethodHandle beginEvent = null;
+    private static MethodHandle setField = null;
+    private static MethodHandle commitEvent = null;
+
+    /**
+     * Execution of a service method, including argument conversion.
+     */
+    public static final FlightRecorderEvent RPC_INVOCATION = new FlightRecorderEvent("org.httprpc.RpcInvocation",
+        "RPC Invocation", "Execution of a service method",
+        new String[] {"path", "handler", "argumentCount"},
+        new Class<?>[] {String.class, String.class, int.class});
+
+    /**
+     * Serialization of a service method's result.
+     */
+    public static final FlightRecorderEvent RPC_SERIALIZATION = new FlightRecorderEvent("org.httprpc.RpcSerialization",
+        "RPC Serialization", "Encoding of a service method's result",
+        new String[] {"path", "handler", "contentType", "bytesWritten"},
+        new Class<?>[] {String.class, String.class, String.class, long.class});
+
+    /**
+     * Spooling of an uploaded file to temporary storage.
+     */
+    public static final FlightRecorderEvent MULTIPART_SPOOL = new FlightRecorderEvent("org.httprpc.MultipartSpool",
+        "Multipart Spool", "Writing of an uploaded file to temporary storage",
+        new String[] {"name", "fileName", "bytesWritten"},
+        new Class<?>[] {String.class, String.class, long.class});
+
+    private FlightRecorderEvent(String name, String label, String description, String[] fieldNames, Class<?>[] fieldTypes) {
+        try {
+            Class<?> eventFactoryType = Class.forName("jdk.jfr.EventFactory");
+            Class<?> eventTypeType = Class.forName("jdk.jfr.EventType");
+            Class<?> eventType = Class.forName("jdk.jfr.Event");
+            Class<?> valueDescriptorType = Class.forName("jdk.jfr.ValueDescriptor");
+
+            List<Object> annotationElements = new ArrayList<>(4);
+
+            annotationElements.add(getAnnotationElement("jdk.jfr.Name", name));
+            annotationElements.add(getAnnotationElement("jdk.jfr.Label", label));
+            annotationElements.add(getAnnotationElement("jdk.jfr.Description", description));
+            annotationElements.add(getAnnotationElement("jdk.jfr.Category", new String[] {CATEGORY}));
+
+            Constructor<?> valueDescriptorConstructor = valueDescriptorType.getConstructor(Class.class, String.class, List.class);
+
+            List<Object> valueDescriptors = new ArrayList<>(fieldNames.length);
+
+            for (int i = 0; i < fieldNames.length; i++) {
+                valueDescriptors.add(valueDescriptorConstructor.newInstance(fieldTypes[i], fieldNames[i],
+                    Collections.singletonList(getAnnotationElement("jdk.jfr.Label", fieldNames[i]))));
+            }
+
+            Object eventFactory = eventFactoryType.getMethod("create", List.class, List.class).invoke(null,
+                annotationElements, valueDescriptors);
+
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+            isEnabled = lookup.findVirtual(eventTypeType, "isEnabled", MethodType.methodType(Boolean.TYPE))
+                .bindTo(eventFactoryType.getMethod("getEventType").invoke(eventFactory));
+
+            newEvent = lookup.findVirtual(eventFactoryType, "newEvent", MethodType.methodType(eventType))
+                .bindTo(eventFactory);
+
+            synchronized (FlightRecorderEvent.class) {
+                if (beginEvent == null) {
+                    beginEvent = lookup.findVirtual(eventType, "begin", MethodType.methodType(Void.TYPE));
+                    setField = lookup.findVirtual(eventType, "set", MethodType.methodType(Void.TYPE, Integer.TYPE, Object.class));
+                    commitEvent = lookup.findVirtual(eventType, "commit", MethodType.methodType(Void.TYPE));
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException exception) {
+            // Flight Recorder is not available
+            isEnabled = null;
+            newEvent = null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object getAnnotationElement(String annotationTypeName, Object value) throws ReflectiveOperationException {
+        Class<? extends Annotation> annotationType = (Class<? extends Annotation>)Class.forName(annotationTypeName);
+
+        return Class.forName("jdk.jfr.AnnotationElement").getConstructor(Class.class, Object.class).newInstance(annotationType, value);
+    }
+
+    /**
+     * Begins timing an event.
+     *
+     * @return
+     * The event, or <tt>null</tt> if the event is not being recorded.
+     */
+    public Object begin() {
+        if (isEnabled == null) {
+            return null;
+        }
+
+        try {
+            if (!(boolean)isEnabled.invoke()) {
+                return null;
+            }
+
+            Object event = newEvent.invoke();
+
+            beginEvent.invoke(event);
+
+            return event;
+        } catch (Throwable throwable) {
+            return null;
+        }
+    }
+
+    /**
+     * Ends timing an event and commits it to the recording.
+     *
+     * @param event
+     * An event returned by {@link #begin()}, or <tt>null</tt>.
+     *
+     * @param values
+     * The event's field values, in declaration order.
+     */
+    public void commit(Object event, Object... values) {
+        if (event == null) {
+            return;
+        }
+
+        try {
+            for (int i = 0; i < values.length; i++) {
+                setField.invoke(event, i, values[i]);
+            }
+
+            commitEvent.invoke(event);
+        } catch (Throwable throwable) {
+            // No-op
+        }
+    }
+}
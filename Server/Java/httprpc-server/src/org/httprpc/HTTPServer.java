@@ -0,0 +1,1562 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded HTTP server that publishes HTTP-RPC services without a servlet
+ * container.
+ * <p>
+ * Connections are accepted and monitored by a single selector thread. When a
+ * request arrives on a connection, the connection is handed to a worker that
+ * parses the request, invokes the handler method, and writes the response.
+ * Idle keep-alive connections do not occupy a worker.
+ */
+public class HTTPServer implements AutoCloseable {
+    // Client connection
+    private static class Connection {
+        public final SocketChannel channel;
+
+        public SelectionKey key = null;
+        public volatile long lastActive = System.nanoTime();
+
+        public final ByteBuffer inputBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        public final ByteBuffer outputBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        public Connection(SocketChannel channel) {
+            this.channel = channel;
+
+            inputBuffer.flip();
+        }
+    }
+
+    // HTTP request
+    private static class Request {
+        public final String method;
+        public final String path;
+        public final String query;
+        public final boolean http11;
+
+        public final TreeMap<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+        public InputStream body = null;
+
+        public Request(String method, String path, String query, boolean http11) {
+            this.method = method;
+            this.path = path;
+            this.query = query;
+            this.http11 = http11;
+        }
+
+        public String getHeader(String name) {
+            return headers.get(name);
+        }
+    }
+
+    // Server request arguments
+    private static class ServerRequestArguments extends RequestArguments {
+        private Map<String, List<String>> parameters;
+
+        public ServerRequestArguments(Map<?, ?> body, Map<String, List<String>> parameters, HashMap<String, String> pathVariables) {
+            super(body, pathVariables);
+
+            this.parameters = parameters;
+        }
+
+        @Override
+        protected String getParameter(String name) {
+            List<String> values = parameters.get(name);
+
+            return (values == null) ? null : values.get(0);
+        }
+
+        @Override
+        protected String[] getParameterValues(String name) {
+            List<String> values = parameters.get(name);
+
+            return (values == null) ? null : values.toArray(new String[values.size()]);
+        }
+    }
+
+    // Input stream that reads from a connection, optionally failing once a deadline has passed
+    private class ConnectionInputStream extends InputStream {
+        private Connection connection;
+
+        private Long deadline = null;
+
+        public ConnectionInputStream(Connection connection) {
+            this.connection = connection;
+        }
+
+        public void setDeadline(Long deadline) {
+            this.deadline = deadline;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+
+            return connection.inputBuffer.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            if (!fill()) {
+                return -1;
+            }
+
+            ByteBuffer inputBuffer = connection.inputBuffer;
+
+            int n = Math.min(len, inputBuffer.remaining());
+
+            inputBuffer.get(b, off, n);
+
+            return n;
+        }
+
+        private boolean fill() throws IOException {
+            ByteBuffer inputBuffer = connection.inputBuffer;
+
+            if (inputBuffer.hasRemaining()) {
+                return true;
+            }
+
+            inputBuffer.clear();
+
+            try {
+                int n;
+                while ((n = connection.channel.read(inputBuffer)) == 0) {
+                    long timeout = idleTimeout;
+
+                    if (deadline != null) {
+                        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+
+                        if (remaining <= 0) {
+                            throw new SocketTimeoutException("Deadline exceeded.");
+                        }
+
+                        timeout = Math.min(remaining, timeout);
+                    }
+
+                    await(connection.channel, SelectionKey.OP_READ, timeout);
+                }
+
+                if (n == -1) {
+                    return false;
+                }
+            } finally {
+                inputBuffer.flip();
+            }
+
+            return true;
+        }
+    }
+
+    // Input stream that reads a fixed number of bytes
+    private static class FixedLengthInputStream extends InputStream {
+        private InputStream inputStream;
+        private long remaining;
+
+        public FixedLengthInputStream(InputStream inputStream, long length) {
+            this.inputStream = inputStream;
+
+            remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+
+            int b = inputStream.read();
+
+            if (b == -1) {
+                throw new EOFException();
+            }
+
+            remaining--;
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+
+            int n = inputStream.read(b, off, (int)Math.min(len, remaining));
+
+            if (n == -1) {
+                throw new EOFException();
+            }
+
+            remaining -= n;
+
+            return n;
+        }
+    }
+
+    // Exception thrown when a request body exceeds the maximum content length
+    private static class ContentTooLargeException extends IOException {
+        private static final long serialVersionUID = 0;
+
+        public ContentTooLargeException() {
+            super("Content too large.");
+        }
+    }
+
+    // Input stream that decodes a chunked body
+    private static class ChunkedInputStream extends InputStream {
+        private InputStream inputStream;
+        private long limit;
+
+        private long remaining = 0;
+        private boolean eof = false;
+
+        public ChunkedInputStream(InputStream inputStream, long limit) {
+            this.inputStream = inputStream;
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextChunk()) {
+                return -1;
+            }
+
+            int b = inputStream.read();
+
+            if (b == -1) {
+                throw new EOFException();
+            }
+
+            remaining--;
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (!nextChunk()) {
+                return -1;
+            }
+
+            int n = inputStream.read(b, off, (int)Math.min(len, remaining));
+
+            if (n == -1) {
+                throw new EOFException();
+            }
+
+            remaining -= n;
+
+            return n;
+        }
+
+        private boolean nextChunk() throws IOException {
+            if (eof) {
+                return false;
+            }
+
+            if (remaining > 0) {
+                return true;
+            }
+
+            String line = readLine(inputStream);
+
+            // Discard the line that terminates the previous chunk
+            if (line != null && line.isEmpty()) {
+                line = readLine(inputStream);
+            }
+
+            if (line == null) {
+                throw new EOFException();
+            }
+
+            int i = line.indexOf(';');
+
+            // Accept only hexadecimal digits, so that the size is read the same way by any intermediary
+            String size = trimTrailing((i == -1) ? line : line.substring(0, i));
+
+            if (size.isEmpty() || !isHexadecimal(size)) {
+                throw new IOException("Invalid chunk size.");
+            }
+
+            try {
+                remaining = Long.parseLong(size, 16);
+            } catch (NumberFormatException exception) {
+                throw new IOException("Invalid chunk size.");
+            }
+
+            if (remaining > limit) {
+                throw new ContentTooLargeException();
+            }
+
+            limit -= remaining;
+
+            if (remaining == 0) {
+                // Discard any trailer fields
+                while ((line = readLine(inputStream)) != null && !line.isEmpty()) {
+                    continue;
+                }
+
+                eof = true;
+
+                return false;
+            }
+
+            return true;
+        }
+    }
+
+    // Response output stream; short responses are sent with a content length, and longer responses are chunked
+    private class ResponseOutputStream extends OutputStream {
+        private Connection connection;
+        private Request request;
+
+        private int status;
+        private LinkedHashMap<String, String> headers;
+
+        private byte[] buffer = new byte[BUFFER_SIZE];
+        private int count = 0;
+
+        private boolean committed = false;
+        private boolean chunked = false;
+        private boolean persistent = true;
+        private boolean closed = false;
+
+        public ResponseOutputStream(Connection connection, Request request, int status, LinkedHashMap<String, String> headers) {
+            this.connection = connection;
+            this.request = request;
+            this.status = status;
+            this.headers = headers;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                drain();
+            }
+
+            buffer[count++] = (byte)b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buffer.length) {
+                    drain();
+                }
+
+                int n = Math.min(len, buffer.length - count);
+
+                System.arraycopy(b, off, buffer, count, n);
+
+                count += n;
+
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void drain() throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed.");
+            }
+
+            if (!committed) {
+                // Stream the remainder of the response
+                chunked = request.http11;
+
+                if (chunked) {
+                    headers.put("Transfer-Encoding", "chunked");
+                } else {
+                    headers.put("Connection", "close");
+
+                    persistent = false;
+                }
+
+                writeHead(connection, status, headers);
+
+                committed = true;
+            }
+
+            if (count > 0 && !request.method.equalsIgnoreCase("HEAD")) {
+                if (chunked) {
+                    writeBytes(connection, (Integer.toHexString(count) + "\r\n").getBytes(StandardCharsets.US_ASCII), 0);
+                }
+
+                writeBytes(connection, buffer, 0, count);
+
+                if (chunked) {
+                    writeBytes(connection, CRLF, 0);
+                }
+            }
+
+            count = 0;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // Content is not pushed to the client until the response has been committed
+            if (committed) {
+                drain();
+
+                flushBytes(connection);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+
+            if (!committed) {
+                headers.put("Content-Length", Integer.toString(count));
+
+                writeHead(connection, status, headers);
+
+                committed = true;
+            }
+
+            drain();
+
+            if (chunked) {
+                writeBytes(connection, LAST_CHUNK, 0);
+            }
+
+            flushBytes(connection);
+
+            closed = true;
+        }
+
+        public boolean isPersistent() {
+            return persistent;
+        }
+    }
+
+    private InetSocketAddress address;
+    private RouteIndex routeIndex;
+    private ResponseEncoders responseEncoders;
+
+    private ExecutorService executorService;
+    private boolean sharedExecutorService;
+
+    private int idleTimeout = DEFAULT_IDLE_TIMEOUT;
+    private int headerTimeout = DEFAULT_HEADER_TIMEOUT;
+    private long maxContentLength = DEFAULT_MAX_CONTENT_LENGTH;
+
+    private ServerSocketChannel serverSocketChannel = null;
+    private Selector selector = null;
+    private Thread selectorThread = null;
+
+    private volatile boolean running = false;
+
+    private ConcurrentLinkedQueue<Connection> resumedConnections = new ConcurrentLinkedQueue<>();
+    private ConcurrentLinkedQueue<Selector> temporarySelectors = new ConcurrentLinkedQueue<>();
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final int MAX_LINE_LENGTH = 8192;
+    private static final int MAX_HEADER_COUNT = 100;
+
+    private static final long MAX_DRAIN_LENGTH = 1024 * 1024;
+
+    private static final int DEFAULT_WORKER_COUNT = 64;
+
+    private static final int DEFAULT_IDLE_TIMEOUT = 30000;
+    private static final int DEFAULT_HEADER_TIMEOUT = 10000;
+    private static final long DEFAULT_MAX_CONTENT_LENGTH = 2 * 1024 * 1024;
+
+    private static final long SELECT_TIMEOUT = 1000;
+
+    private static final String TOKEN_SYMBOLS = "!#$%&'*+-.^_`|~";
+
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] LAST_CHUNK = {'0', '\r', '\n', '\r', '\n'};
+
+    private static final HashMap<Integer, String> reasonPhrases = new HashMap<>();
+
+    static {
+        reasonPhrases.put(100, "Continue");
+        reasonPhrases.put(200, "OK");
+        reasonPhrases.put(204, "No Content");
+        reasonPhrases.put(400, "Bad Request");
+        reasonPhrases.put(404, "Not Found");
+        reasonPhrases.put(405, "Method Not Allowed");
+        reasonPhrases.put(413, "Content Too Large");
+        reasonPhrases.put(415, "Unsupported Media Type");
+        reasonPhrases.put(431, "Request Header Fields Too Large");
+        reasonPhrases.put(500, "Internal Server Error");
+        reasonPhrases.put(501, "Not Implemented");
+        reasonPhrases.put(503, "Service Unavailable");
+        reasonPhrases.put(504, "Gateway Timeout");
+        reasonPhrases.put(505, "HTTP Version Not Supported");
+    }
+
+    /**
+     * Constructs a new HTTP server that publishes a single service at the
+     * root path.
+     *
+     * @param port
+     * The port on which the server will listen, or 0 to use an ephemeral port.
+     *
+     * @param serviceType
+     * The service type.
+     */
+    public HTTPServer(int port, Class<? extends WebService> serviceType) {
+        this(new InetSocketAddress(port), Collections.<String, Class<? extends WebService>>singletonMap("", serviceType), null);
+    }
+
+    /**
+     * Constructs a new HTTP server.
+     *
+     * @param address
+     * The address on which the server will listen.
+     *
+     * @param serviceTypes
+     * The service types to publish, keyed by path prefix. An empty prefix
+     * mounts a service at the root path.
+     *
+     * @param executorService
+     * The executor service that will process requests, or <tt>null</tt> for a
+     * default executor. The default executor uses a virtual thread per request
+     * when virtual threads are supported, and a fixed pool of worker threads
+     * otherwise.
+     */
+    public HTTPServer(InetSocketAddress address, Map<String, Class<? extends WebService>> serviceTypes, ExecutorService executorService) {
+        if (address == null || serviceTypes == null) {
+            throw new IllegalArgumentException();
+        }
+
+        this.address = address;
+
+        LinkedHashMap<String, Class<?>> routes = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Class<? extends WebService>> entry : serviceTypes.entrySet()) {
+            RouteIndex.putServiceType(routes, entry.getKey(), entry.getValue());
+        }
+
+        routeIndex = new RouteIndex(routes);
+
+        responseEncoders = new ResponseEncoders(new JSONEncoder(), new CBOREncoder(), routeIndex.getClassLoaders());
+
+        if (executorService == null) {
+            this.executorService = createExecutorService();
+
+            sharedExecutorService = false;
+        } else {
+            this.executorService = executorService;
+
+            sharedExecutorService = true;
+        }
+    }
+
+    private static ExecutorService createExecutorService() {
+        try {
+            return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException exception) {
+            return Executors.newFixedThreadPool(DEFAULT_WORKER_COUNT, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "httprpc-worker");
+
+                    thread.setDaemon(true);
+
+                    return thread;
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the time that a connection may remain idle before it is closed.
+     *
+     * @return
+     * The idle timeout, in milliseconds.
+     */
+    public synchronized int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Sets the time that a connection may remain idle before it is closed.
+     * The timeout also limits the time spent waiting to read or write any
+     * part of a request or response.
+     *
+     * @param idleTimeout
+     * The idle timeout, in milliseconds. The default is 30 seconds.
+     */
+    public synchronized void setIdleTimeout(int idleTimeout) {
+        if (idleTimeout <= 0) {
+            throw new IllegalArgumentException();
+        }
+
+        checkStopped();
+
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Returns the time allowed to receive the request line and headers of a
+     * request.
+     *
+     * @return
+     * The header timeout, in milliseconds.
+     */
+    public synchronized int getHeaderTimeout() {
+        return headerTimeout;
+    }
+
+    /**
+     * Sets the time allowed to receive the request line and headers of a
+     * request, measured from the arrival of its first byte. A client that
+     * sends its headers more slowly is disconnected, so that it cannot hold a
+     * worker indefinitely.
+     *
+     * @param headerTimeout
+     * The header timeout, in milliseconds. The default is 10 seconds.
+     */
+    public synchronized void setHeaderTimeout(int headerTimeout) {
+        if (headerTimeout <= 0) {
+            throw new IllegalArgumentException();
+        }
+
+        checkStopped();
+
+        this.headerTimeout = headerTimeout;
+    }
+
+    /**
+     * Returns the maximum length of a request body.
+     *
+     * @return
+     * The maximum content length, in bytes.
+     */
+    public synchronized long getMaxContentLength() {
+        return maxContentLength;
+    }
+
+    /**
+     * Sets the maximum length of a request body. Larger requests are rejected
+     * with HTTP 413.
+     *
+     * @param maxContentLength
+     * The maximum content length, in bytes. The default is 2 MB.
+     */
+    public synchronized void setMaxContentLength(long maxContentLength) {
+        if (maxContentLength < 0) {
+            throw new IllegalArgumentException();
+        }
+
+        checkStopped();
+
+        this.maxContentLength = maxContentLength;
+    }
+
+    private void checkStopped() {
+        if (running) {
+            throw new IllegalStateException("Server is already running.");
+        }
+    }
+
+    /**
+     * Starts the server.
+     *
+     * @throws IOException
+     * If the server could not be started.
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            throw new IllegalStateException("Server is already running.");
+        }
+
+        serverSocketChannel = ServerSocketChannel.open();
+
+        serverSocketChannel.bind(address);
+        serverSocketChannel.configureBlocking(false);
+
+        selector = Selector.open();
+
+        serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+
+        selectorThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                select();
+            }
+        }, "httprpc-selector");
+
+        selectorThread.start();
+    }
+
+    /**
+     * Returns the port on which the server is listening.
+     *
+     * @return
+     * The server's local port, or -1 if the server is not running.
+     */
+    public int getPort() {
+        if (!running) {
+            return -1;
+        }
+
+        return serverSocketChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Stops the server and closes all connections.
+     */
+    @Override
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+
+        running = false;
+
+        selector.wakeup();
+
+        try {
+            selectorThread.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (SelectionKey key : selector.keys()) {
+            closeChannel(key.channel());
+        }
+
+        try {
+            selector.close();
+        } catch (IOException exception) {
+            // No-op
+        }
+
+        Selector temporarySelector;
+        while ((temporarySelector = temporarySelectors.poll()) != null) {
+            try {
+                temporarySelector.close();
+            } catch (IOException exception) {
+                // No-op
+            }
+        }
+
+        if (!sharedExecutorService) {
+            executorService.shutdown();
+        }
+    }
+
+    private void select() {
+        long lastSweep = System.nanoTime();
+
+        while (running) {
+            try {
+                selector.select(SELECT_TIMEOUT);
+            } catch (IOException exception) {
+                break;
+            }
+
+            // Resume monitoring connections whose requests have been processed
+            Connection connection;
+            while ((connection = resumedConnections.poll()) != null) {
+                if (connection.key.isValid()) {
+                    connection.key.interestOps(SelectionKey.OP_READ);
+                }
+            }
+
+            Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+
+            while (iterator.hasNext()) {
+                SelectionKey key = iterator.next();
+
+                iterator.remove();
+
+                if (!key.isValid()) {
+                    continue;
+                }
+
+                if (key.isAcceptable()) {
+                    accept();
+                } else if (key.isReadable()) {
+                    final Connection readable = (Connection)key.attachment();
+
+                    // Stop monitoring the connection while a worker owns it
+                    key.interestOps(0);
+
+                    try {
+                        executorService.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                process(readable);
+                            }
+                        });
+                    } catch (RejectedExecutionException exception) {
+                        close(readable);
+                    }
+                }
+            }
+
+            // Close connections that have been idle for too long
+            long now = System.nanoTime();
+
+            if (now - lastSweep > TimeUnit.MILLISECONDS.toNanos(SELECT_TIMEOUT)) {
+                for (SelectionKey key : selector.keys()) {
+                    Object attachment = key.attachment();
+
+                    if (attachment != null && key.isValid() && key.interestOps() == SelectionKey.OP_READ
+                        && now - ((Connection)attachment).lastActive > TimeUnit.MILLISECONDS.toNanos(idleTimeout)) {
+                        close((Connection)attachment);
+                    }
+                }
+
+                lastSweep = now;
+            }
+        }
+    }
+
+    private void accept() {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = serverSocketChannel.accept();
+            } catch (IOException exception) {
+                return;
+            }
+
+            if (channel == null) {
+                return;
+            }
+
+            Connection connection = new Connection(channel);
+
+            try {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            } catch (IOException exception) {
+                closeChannel(channel);
+            }
+        }
+    }
+
+    private void process(Connection connection) {
+        try {
+            // Process pipelined requests that have already been received
+            do {
+                if (!processRequest(connection)) {
+                    close(connection);
+                    return;
+                }
+            } while (connection.inputBuffer.hasRemaining());
+        } catch (IOException | RuntimeException exception) {
+            close(connection);
+            return;
+        }
+
+        connection.lastActive = System.nanoTime();
+
+        resumedConnections.add(connection);
+
+        selector.wakeup();
+    }
+
+    private boolean processRequest(Connection connection) throws IOException {
+        ConnectionInputStream inputStream = new ConnectionInputStream(connection);
+
+        // Limit the time a client can take to send the request's head
+        inputStream.setDeadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(headerTimeout));
+
+        // Read request line
+        String requestLine = readLine(inputStream);
+
+        if (requestLine == null) {
+            return false;
+        }
+
+        if (requestLine.isEmpty()) {
+            // Tolerate a blank line preceding a request
+            requestLine = readLine(inputStream);
+
+            if (requestLine == null) {
+                return false;
+            }
+        }
+
+        long startTime = System.nanoTime();
+
+        String[] tokens = requestLine.split(" ");
+
+        if (tokens.length != 3 || !tokens[2].startsWith("HTTP/1.")) {
+            sendStatus(connection, null, (tokens.length == 3 && tokens[2].startsWith("HTTP/")) ? 505 : 400);
+            return false;
+        }
+
+        String target = tokens[1];
+
+        // Strip the scheme and authority from an absolute request target
+        if (!target.startsWith("/")) {
+            int i = target.indexOf("://");
+
+            if (i != -1) {
+                int j = target.indexOf('/', i + 3);
+
+                target = (j == -1) ? "/" : target.substring(j);
+            }
+        }
+
+        int i = target.indexOf('?');
+
+        String path = (i == -1) ? target : target.substring(0, i);
+        String query = (i == -1) ? null : target.substring(i + 1);
+
+        try {
+            // Decode the path without treating "+" as a space
+            path = URLDecoder.decode(path.replace("+", "%2B"), "UTF-8");
+        } catch (IllegalArgumentException exception) {
+            sendStatus(connection, null, 400);
+            return false;
+        }
+
+        Request request = new Request(tokens[0], path, query, tokens[2].equals("HTTP/1.1"));
+
+        // Read headers
+        String header;
+        while ((header = readLine(inputStream)) != null && !header.isEmpty()) {
+            if (request.headers.size() == MAX_HEADER_COUNT) {
+                sendStatus(connection, request, 431);
+                return false;
+            }
+
+            int j = header.indexOf(':');
+
+            // Reject line folding and whitespace around field names, which intermediaries may interpret differently
+            if (j <= 0 || !isToken(header, 0, j)) {
+                sendStatus(connection, null, 400);
+                return false;
+            }
+
+            String name = header.substring(0, j);
+            String value = header.substring(j + 1).trim();
+
+            String previousValue = request.headers.get(name);
+
+            request.headers.put(name, (previousValue == null) ? value : previousValue + ", " + value);
+        }
+
+        if (header == null) {
+            return false;
+        }
+
+        inputStream.setDeadline(null);
+
+        // Identify the request body
+        String transferEncoding = request.getHeader("Transfer-Encoding");
+        String contentLength = request.getHeader("Content-Length");
+
+        if (transferEncoding != null) {
+            // A message with both headers may be framed differently by an intermediary
+            if (contentLength != null) {
+                sendStatus(connection, null, 400);
+                return false;
+            }
+
+            if (!transferEncoding.equalsIgnoreCase("chunked")) {
+                sendStatus(connection, null, 501);
+                return false;
+            }
+
+            request.body = new ChunkedInputStream(inputStream, maxContentLength);
+        } else if (contentLength != null) {
+            long length;
+            if (contentLength.isEmpty() || !isDecimal(contentLength)) {
+                length = -1;
+            } else {
+                try {
+                    length = Long.parseLong(contentLength);
+                } catch (NumberFormatException exception) {
+                    length = -1;
+                }
+            }
+
+            if (length < 0) {
+                sendStatus(connection, null, 400);
+                return false;
+            }
+
+            if (length > maxContentLength) {
+                sendStatus(connection, null, 413);
+                return false;
+            }
+
+            request.body = new FixedLengthInputStream(inputStream, length);
+        } else {
+            request.body = new FixedLengthInputStream(inputStream, 0);
+        }
+
+        String expect = request.getHeader("Expect");
+
+        if (expect != null && expect.equalsIgnoreCase("100-continue") && request.http11) {
+            writeBytes(connection, "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII), 0);
+            flushBytes(connection);
+        }
+
+        boolean persistent = dispatch(connection, request, startTime);
+
+        String connectionHeader = request.getHeader("Connection");
+
+        if (!request.http11 || (connectionHeader != null && connectionHeader.equalsIgnoreCase("close"))) {
+            persistent = false;
+        }
+
+        // Discard any unread content so that the next request can be read
+        if (persistent) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+
+            long n = 0;
+
+            int count;
+            while ((count = request.body.read(buffer)) != -1) {
+                n += count;
+
+                if (n > MAX_DRAIN_LENGTH) {
+                    return false;
+                }
+            }
+        }
+
+        return persistent;
+    }
+
+    private boolean dispatch(Connection connection, Request request, long startTime) throws IOException {
+        // Look up resource
+        HashMap<String, String> pathVariables = new HashMap<>();
+
+        Resource resource = routeIndex.getResource(request.path, pathVariables);
+
+        if (resource == null) {
+            return sendStatus(connection, request, 404);
+        }
+
+        Verb verb = Verb.of(request.method);
+
+        HandlerSet handlerSet = (verb == null) ? null : resource.handlerSets[verb.ordinal()];
+
+        if (handlerSet == null) {
+            return sendStatus(connection, request, 405);
+        }
+
+        // Bind arguments
+        RequestArguments arguments;
+        try {
+            arguments = getRequestArguments(request, pathVariables.isEmpty() ? null : pathVariables);
+        } catch (UnsupportedOperationException exception) {
+            return sendStatus(connection, request, 415);
+        } catch (IllegalArgumentException exception) {
+            return sendStatus(connection, request, 400);
+        } catch (ContentTooLargeException exception) {
+            return sendStatus(connection, null, 413);
+        }
+
+        Handler handler = handlerSet.resolve(arguments);
+
+        // Establish the time after which the caller will no longer be waiting
+        Long deadline = AdmissionControl.getDeadline(request.getHeader(AdmissionControl.REQUEST_TIMEOUT_HEADER), startTime);
+
+        // Shed load when the handler's concurrency limit has been reached
+        if (!AdmissionControl.acquire(handler)) {
+            LinkedHashMap<String, String> headers = new LinkedHashMap<>();
+
+            headers.put(AdmissionControl.RETRY_AFTER_HEADER, Integer.toString(handler.concurrencyLimit.retryAfter()));
+
+            return sendStatus(connection, request, AdmissionControl.SERVICE_UNAVAILABLE, headers);
+        }
+
+        int status = 500;
+
+        RequestTiming requestTiming = (handler.concurrencyLimiter == null) ? null : new RequestTiming(startTime);
+
+        RequestTiming.set(requestTiming);
+
+        RequestContext requestContext = new RequestContext(getLocale(request), null, null, deadline);
+
+        try {
+            // Skip work whose result the caller will not receive
+            if (AdmissionControl.hasExpired(deadline)) {
+                status = AdmissionControl.GATEWAY_TIMEOUT;
+
+                return sendStatus(connection, request, status);
+            }
+
+            Object result;
+            try {
+                result = handler.execute(requestContext, arguments);
+
+                if (result instanceof CompletionStage<?>) {
+                    result = ((CompletionStage<?>)result).toCompletableFuture().get();
+
+                    if (requestTiming != null) {
+                        requestTiming.end(RequestTiming.Phase.INVOKE);
+                    }
+                }
+            } catch (ArgumentBinder.InvalidStructureException exception) {
+                status = 400;
+
+                return sendStatus(connection, request, status);
+            } catch (RuntimeException | ExecutionException exception) {
+                return sendStatus(connection, request, status);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+
+                return sendStatus(connection, request, status);
+            }
+
+            // Write response
+            if (!handler.returnsValue) {
+                status = 204;
+
+                return sendStatus(connection, request, status);
+            }
+
+            status = 200;
+
+            ResponseEncoder responseEncoder = responseEncoders.get(request.getHeader("Accept"));
+
+            LinkedHashMap<String, String> headers = new LinkedHashMap<>();
+
+            headers.put("Vary", "Accept");
+            headers.put("Content-Type", responseEncoder.getContentType());
+
+            ResponseOutputStream outputStream = new ResponseOutputStream(connection, request, status, headers);
+
+            try {
+                responseEncoder.writeValue(result, outputStream);
+
+                outputStream.close();
+            } catch (IOException | RuntimeException exception) {
+                // The response has already been started, so only the concurrency limiter sees the failure
+                status = 500;
+
+                throw exception;
+            } finally {
+                if (requestTiming != null) {
+                    requestTiming.end(RequestTiming.Phase.SERIALIZE);
+                }
+            }
+
+            return outputStream.isPersistent();
+        } finally {
+            RequestTiming.set(null);
+
+            // Release the service instance once its result has been written
+            handler.release(requestContext);
+
+            arguments.deleteFiles();
+
+            if (requestTiming != null) {
+                AdmissionControl.release(handler, requestTiming, status, false, deadline);
+            }
+        }
+    }
+
+    private static RequestArguments getRequestArguments(Request request, HashMap<String, String> pathVariables) throws IOException {
+        LinkedHashMap<String, List<String>> parameters = new LinkedHashMap<>();
+
+        if (request.query != null) {
+            decodeParameters(request.query, parameters);
+        }
+
+        Map<?, ?> body = null;
+
+        String contentType = request.getHeader("Content-Type");
+
+        if (contentType != null) {
+            String mediaType = ResponseEncoders.getMediaType(contentType);
+
+            if (mediaType.equals("application/json")) {
+                try {
+                    body = RequestArguments.readBody(new InputStreamReader(request.body, StandardCharsets.UTF_8));
+                } catch (IllegalArgumentException exception) {
+                    // Report oversized bodies as such rather than as malformed content
+                    if (exception.getCause() instanceof ContentTooLargeException) {
+                        throw (ContentTooLargeException)exception.getCause();
+                    }
+
+                    throw exception;
+                }
+            } else if (mediaType.equals("application/x-www-form-urlencoded")) {
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+                byte[] buffer = new byte[BUFFER_SIZE];
+
+                int n;
+                while ((n = request.body.read(buffer)) != -1) {
+                    content.write(buffer, 0, n);
+                }
+
+                decodeParameters(new String(content.toByteArray(), StandardCharsets.ISO_8859_1), parameters);
+            } else if (mediaType.startsWith("multipart/")) {
+                throw new UnsupportedOperationException();
+            }
+        }
+
+        return new ServerRequestArguments(body, parameters, pathVariables);
+    }
+
+    private static void decodeParameters(String content, Map<String, List<String>> parameters) {
+        String[] pairs = content.split("&");
+
+        for (int i = 0; i < pairs.length; i++) {
+            String pair = pairs[i];
+
+            if (pair.isEmpty()) {
+                continue;
+            }
+
+            int j = pair.indexOf('=');
+
+            String name = decode((j == -1) ? pair : pair.substring(0, j));
+            String value = decode((j == -1) ? "" : pair.substring(j + 1));
+
+            List<String> values = parameters.get(name);
+
+            if (values == null) {
+                values = new ArrayList<>(1);
+
+                parameters.put(name, values);
+            }
+
+            values.add(value);
+        }
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    private static Locale getLocale(Request request) {
+        String acceptLanguage = request.getHeader("Accept-Language");
+
+        if (acceptLanguage == null) {
+            return Locale.getDefault();
+        }
+
+        // Use the first language range
+        String languageRange = acceptLanguage.split(",")[0];
+
+        int i = languageRange.indexOf(';');
+
+        String languageTag = ((i == -1) ? languageRange : languageRange.substring(0, i)).trim();
+
+        if (languageTag.isEmpty() || languageTag.equals("*")) {
+            return Locale.getDefault();
+        }
+
+        return Locale.forLanguageTag(languageTag);
+    }
+
+    private boolean sendStatus(Connection connection, Request request, int status) throws IOException {
+        return sendStatus(connection, request, status, new LinkedHashMap<String, String>());
+    }
+
+    private boolean sendStatus(Connection connection, Request request, int status, LinkedHashMap<String, String> headers) throws IOException {
+        if (status != 204) {
+            headers.put("Content-Length", "0");
+        }
+
+        if (request == null) {
+            headers.put("Connection", "close");
+        }
+
+        writeHead(connection, status, headers);
+        flushBytes(connection);
+
+        return (request != null);
+    }
+
+    private void writeHead(Connection connection, int status, Map<String, String> headers) throws IOException {
+        StringBuilder headBuilder = new StringBuilder();
+
+        String reasonPhrase = reasonPhrases.get(status);
+
+        headBuilder.append("HTTP/1.1 ");
+        headBuilder.append(status);
+        headBuilder.append(' ');
+        headBuilder.append((reasonPhrase == null) ? "" : reasonPhrase);
+        headBuilder.append("\r\n");
+
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            headBuilder.append(entry.getKey());
+            headBuilder.append(": ");
+            headBuilder.append(entry.getValue());
+            headBuilder.append("\r\n");
+        }
+
+        headBuilder.append("\r\n");
+
+        writeBytes(connection, headBuilder.toString().getBytes(StandardCharsets.ISO_8859_1), 0);
+    }
+
+    private void writeBytes(Connection connection, byte[] b, int off) throws IOException {
+        writeBytes(connection, b, off, b.length - off);
+    }
+
+    private void writeBytes(Connection connection, byte[] b, int off, int len) throws IOException {
+        ByteBuffer outputBuffer = connection.outputBuffer;
+
+        while (len > 0) {
+            if (!outputBuffer.hasRemaining()) {
+                flushBytes(connection);
+            }
+
+            int n = Math.min(len, outputBuffer.remaining());
+
+            outputBuffer.put(b, off, n);
+
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void flushBytes(Connection connection) throws IOException {
+        ByteBuffer outputBuffer = connection.outputBuffer;
+
+        outputBuffer.flip();
+
+        try {
+            while (outputBuffer.hasRemaining()) {
+                if (connection.channel.write(outputBuffer) == 0) {
+                    await(connection.channel, SelectionKey.OP_WRITE, idleTimeout);
+                }
+            }
+        } finally {
+            outputBuffer.clear();
+        }
+    }
+
+    private void await(SocketChannel channel, int operation, long timeout) throws IOException {
+        // Wait for the channel using a temporary selector, leaving the channel's primary registration intact
+        Selector temporarySelector = temporarySelectors.poll();
+
+        if (temporarySelector == null) {
+            temporarySelector = Selector.open();
+        }
+
+        try {
+            SelectionKey key = channel.register(temporarySelector, operation);
+
+            try {
+                if (temporarySelector.select(timeout) == 0) {
+                    throw new SocketTimeoutException();
+                }
+            } finally {
+                key.cancel();
+
+                temporarySelector.selectNow();
+            }
+        } catch (ClosedChannelException exception) {
+            temporarySelector.close();
+
+            throw exception;
+        }
+
+        if (running) {
+            temporarySelectors.add(temporarySelector);
+        } else {
+            temporarySelector.close();
+        }
+    }
+
+    private static boolean isToken(String value, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || TOKEN_SYMBOLS.indexOf(c) != -1)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isDecimal(String value) {
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isHexadecimal(String value) {
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F'))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static String trimTrailing(String value) {
+        int n = value.length();
+
+        while (n > 0 && (value.charAt(n - 1) == ' ' || value.charAt(n - 1) == '\t')) {
+            n--;
+        }
+
+        return value.substring(0, n);
+    }
+
+    private static String readLine(InputStream inputStream) throws IOException {
+        StringBuilder lineBuilder = new StringBuilder();
+
+        int b;
+        while ((b = inputStream.read()) != -1) {
+            if (b == '\n') {
+                int n = lineBuilder.length();
+
+                if (n > 0 && lineBuilder.charAt(n - 1) == '\r') {
+                    lineBuilder.setLength(n - 1);
+                }
+
+                return lineBuilder.toString();
+            }
+
+            if (lineBuilder.length() == MAX_LINE_LENGTH) {
+                throw new IOException("Line too long.");
+            }
+
+            lineBuilder.append((char)b);
+        }
+
+        if (lineBuilder.length() > 0) {
+            throw new EOFException();
+        }
+
+        return null;
+    }
+
+    private void close(Connection connection) {
+        if (connection.key != null) {
+            connection.key.cancel();
+        }
+
+        closeChannel(connection.channel);
+    }
+
+    private static void closeChannel(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException exception) {
+            // No-op
+        }
+    }
+
+    /**
+     * Starts a server from the command line. The first argument specifies the
+     * port. Each subsequent argument specifies a service type, optionally
+     * preceded by a path prefix and an equals sign (e.g.
+     * <tt>math=com.example.MathService</tt>).
+     *
+     * @param args
+     * The command-line arguments.
+     *
+     * @throws Exception
+     * If the server could not be started.
+     */
+    @SuppressWarnings("unchecked")
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: " + HTTPServer.class.getName() + " port [prefix=]serviceClassName ...");
+            System.exit(1);
+        }
+
+        LinkedHashMap<String, Class<? extends WebService>> serviceTypes = new LinkedHashMap<>();
+
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+
+            int j = arg.indexOf('=');
+
+            Class<?> serviceType = Class.forName((j == -1) ? arg : arg.substring(j + 1));
+
+            if (!WebService.class.isAssignableFrom(serviceType)) {
+                throw new IllegalArgumentException("Invalid service type.");
+            }
+
+            serviceTypes.put((j == -1) ? "" : arg.substring(0, j), (Class<? extends WebService>)serviceType);
+        }
+
+        HTTPServer server = new HTTPServer(new InetSocketAddress(Integer.parseInt(args[0])), serviceTypes, null);
+
+        server.start();
+    }
+}
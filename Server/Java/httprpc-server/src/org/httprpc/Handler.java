@@ -0,0 +1,421 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Service method handler.
+ */
+class Handler {
+    public final Method method;
+    public final MethodHandle invoker;
+
+    public final ServiceDispatcher dispatcher;
+    public final int index;
+
+    public final ServiceProvider serviceProvider;
+
+    public final Verb verb;
+    public final String path;
+    public final String signature;
+
+    public final boolean isStatic;
+    public final boolean isAsynchronous;
+    public final boolean returnsValue;
+
+    public final boolean coalesce;
+    public final ResponseCache responseCache;
+
+    public final ConcurrencyLimit concurrencyLimit;
+    public final ConcurrencyLimiter concurrencyLimiter;
+
+    public HandlerMetrics metrics = null;
+
+    public final String[] parameterNames;
+    public final ArgumentBinder[] binders;
+
+    private final ThreadLocal<Object[]> argumentBuffer = new ThreadLocal<>();
+
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, WebService.class, Object[].class);
+
+    private static final Object[] EMPTY_ARGUMENTS = new Object[0];
+
+    public Handler(Method method, String prefix, ServiceProvider serviceProvider,
+        ArgumentConverters argumentConverters) {
+        this(method, null, -1, prefix, serviceProvider, argumentConverters);
+    }
+
+    public Handler(ServiceDispatcher dispatcher, int index, String prefix, ServiceProvider serviceProvider,
+        ArgumentConverters argumentConverters) {
+        this(getMethod(dispatcher, index), dispatcher, index, prefix, serviceProvider, argumentConverters);
+    }
+
+    private Handler(Method method, ServiceDispatcher dispatcher, int index, String prefix, ServiceProvider serviceProvider,
+        ArgumentConverters argumentConverters) {
+        this.method = method;
+        this.dispatcher = dispatcher;
+        this.index = index;
+        this.serviceProvider = serviceProvider;
+
+        String verbName;
+        String methodPath;
+        if (dispatcher == null) {
+            RPC rpc = method.getAnnotation(RPC.class);
+
+            verbName = rpc.method();
+            methodPath = rpc.path();
+        } else {
+            verbName = dispatcher.getVerb(index);
+            methodPath = dispatcher.getPath(index);
+        }
+
+        // Mount the method beneath the service's prefix
+        if (prefix.length() == 0) {
+            path = methodPath;
+        } else {
+            while (methodPath.startsWith("/")) {
+                methodPath = methodPath.substring(1);
+            }
+
+            path = (methodPath.length() == 0) ? prefix : prefix + "/" + methodPath;
+        }
+
+        verb = Verb.of(verbName);
+
+        if (verb == null) {
+            throw new IllegalArgumentException("Unsupported HTTP verb.");
+        }
+
+        StringBuilder signatureBuilder = new StringBuilder();
+
+        signatureBuilder.append(method.getName());
+        signatureBuilder.append('(');
+
+        Class<?>[] parameterTypes = method.getParameterTypes();
+
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (i > 0) {
+                signatureBuilder.append(',');
+            }
+
+            signatureBuilder.append(parameterTypes[i].getSimpleName());
+        }
+
+        signatureBuilder.append(')');
+
+        signature = signatureBuilder.toString();
+
+        isStatic = Modifier.isStatic(method.getModifiers());
+
+        Class<?> returnType = method.getReturnType();
+
+        isAsynchronous = CompletionStage.class.isAssignableFrom(returnType);
+
+        Type valueType;
+        if (isAsynchronous) {
+            Type genericReturnType = method.getGenericReturnType();
+
+            if (genericReturnType instanceof ParameterizedType) {
+                valueType = ((ParameterizedType)genericReturnType).getActualTypeArguments()[0];
+            } else {
+                valueType = Object.class;
+            }
+        } else {
+            valueType = returnType;
+        }
+
+        returnsValue = !(valueType == Void.TYPE || valueType == Void.class);
+
+        coalesce = method.isAnnotationPresent(Coalesce.class);
+
+        if (coalesce && verb != Verb.GET) {
+            throw new IllegalArgumentException("Only GET methods can be coalesced.");
+        }
+
+        Cacheable cacheable = method.getAnnotation(Cacheable.class);
+
+        if (cacheable != null) {
+            if (!returnsValue) {
+                throw new IllegalArgumentException("Cached methods must return a value.");
+            }
+
+            if (cacheable.ttl() <= 0 || cacheable.maxEntries() <= 0) {
+                throw new IllegalArgumentException("Invalid cache configuration.");
+            }
+
+            if (verb != Verb.GET) {
+                throw new IllegalArgumentException("Only GET methods can be cached.");
+            }
+
+            responseCache = new ResponseCache(cacheable.ttl(), cacheable.maxEntries(), cacheable.perUser());
+        } else {
+            responseCache = null;
+        }
+
+        concurrencyLimit = method.getAnnotation(ConcurrencyLimit.class);
+
+        if (concurrencyLimit != null) {
+            if (concurrencyLimit.value() <= 0 || concurrencyLimit.queueTimeout() < 0 || concurrencyLimit.retryAfter() < 0) {
+                throw new IllegalArgumentException("Invalid concurrency limit.");
+            }
+
+            concurrencyLimiter = new ConcurrencyLimiter(concurrencyLimit.value(), concurrencyLimit.adaptive());
+        } else {
+            concurrencyLimiter = null;
+        }
+
+        Parameter[] parameters = method.getParameters();
+
+        // Generated dispatchers retain the declared names without requiring -parameters
+        String[] declaredNames = (dispatcher == null) ? null : dispatcher.getParameterNames(index);
+
+        parameterNames = new String[parameters.length];
+        binders = new ArgumentBinder[parameters.length];
+
+        for (int i = 0; i < parameters.length; i++) {
+            Parameter parameter = parameters[i];
+
+            parameterNames[i] = ((declaredNames == null) ? parameter.getName() : declaredNames[i]).intern();
+            binders[i] = getBinder(parameter, argumentConverters);
+        }
+
+        if (dispatcher != null) {
+            invoker = null;
+        } else {
+            // Adapt the method to a uniform (service, arguments) signature
+            MethodHandle methodHandle;
+            try {
+                methodHandle = MethodHandles.publicLookup().unreflect(method).asSpreader(Object[].class, parameters.length);
+            } catch (IllegalAccessException exception) {
+                throw new IllegalArgumentException(exception);
+            }
+
+            if (isStatic) {
+                methodHandle = MethodHandles.dropArguments(methodHandle, 0, WebService.class);
+            }
+
+            invoker = methodHandle.asType(INVOKER_TYPE);
+        }
+    }
+
+    private static Method getMethod(ServiceDispatcher dispatcher, int index) {
+        try {
+            return dispatcher.getMethod(index);
+        } catch (NoSuchMethodException exception) {
+            throw new IllegalArgumentException(exception);
+        }
+    }
+
+    private static ArgumentBinder getBinder(Parameter parameter, ArgumentConverters argumentConverters) {
+        Class<?> type = parameter.getType();
+
+        ArgumentBinder binder;
+        if (type == List.class) {
+            Type elementType = ((ParameterizedType)parameter.getParameterizedType()).getActualTypeArguments()[0];
+
+            if (elementType == URL.class) {
+                binder = new ArgumentBinder.FileListBinder();
+            } else {
+                ArgumentConverter converter = (elementType instanceof Class<?>) ? argumentConverters.getConverter((Class<?>)elementType) : null;
+
+                if (converter != null) {
+                    binder = new ArgumentBinder.ListBinder(converter);
+                } else if (!(elementType instanceof Class<?>) || isStructure((Class<?>)elementType)) {
+                    binder = new ArgumentBinder.StructureBinder(parameter.getParameterizedType());
+                } else {
+                    binder = null;
+                }
+            }
+        } else if (type.isArray()) {
+            Class<?> componentType = type.getComponentType();
+
+            if (componentType == Double.TYPE || componentType == Long.TYPE || componentType == Integer.TYPE || componentType == Boolean.TYPE) {
+                binder = new ArgumentBinder.ArrayBinder(componentType);
+            } else {
+                binder = null;
+            }
+        } else if (type == URL.class) {
+            binder = new ArgumentBinder.FileBinder();
+        } else {
+            ArgumentConverter converter = argumentConverters.getConverter(type);
+
+            if (converter != null) {
+                binder = new ArgumentBinder.ValueBinder(converter);
+            } else if (isStructure(type)) {
+                binder = new ArgumentBinder.StructureBinder(parameter.getParameterizedType());
+            } else {
+                binder = null;
+            }
+        }
+
+        if (binder == null) {
+            throw new IllegalArgumentException("Unsupported parameter type: " + parameter.getParameterizedType().getTypeName());
+        }
+
+        return binder;
+    }
+
+    private static boolean isStructure(Class<?> type) {
+        if (type == Map.class) {
+            return true;
+        }
+
+        if (type.isInterface() || type.isArray() || type.isPrimitive() || Modifier.isAbstract(type.getModifiers())) {
+            return false;
+        }
+
+        try {
+            type.getConstructor();
+        } catch (NoSuchMethodException exception) {
+            return false;
+        }
+
+        // Require at least one property setter
+        Method[] methods = type.getMethods();
+
+        for (int i = 0; i < methods.length; i++) {
+            Method method = methods[i];
+
+            if (method.getName().startsWith("set") && method.getParameterCount() == 1) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public Object execute(RequestContext requestContext, RequestArguments arguments) throws IOException {
+        WebService service;
+        if (!isStatic) {
+            service = serviceProvider.acquire();
+
+            requestContext.service = service;
+
+            RequestContext.set(requestContext);
+        } else {
+            service = null;
+        }
+
+        Object[] argumentValues = acquireArguments();
+
+        RequestTiming requestTiming = RequestTiming.get();
+
+        Object event = FlightRecorderEvent.RPC_INVOCATION.begin();
+
+        boolean completed = false;
+
+        try {
+            for (int i = 0; i < parameterNames.length; i++) {
+                argumentValues[i] = binders[i].bind(arguments, parameterNames[i]);
+            }
+
+            if (requestTiming != null) {
+                requestTiming.end(RequestTiming.Phase.POPULATE);
+            }
+
+            Object result;
+            try {
+                result = invoke(service, argumentValues);
+            } finally {
+                // Attribute failed invocations to the invoke phase as well
+                if (requestTiming != null) {
+                    requestTiming.end(RequestTiming.Phase.INVOKE);
+                }
+            }
+
+            completed = true;
+
+            return result;
+        } finally {
+            if (event != null) {
+                FlightRecorderEvent.RPC_INVOCATION.commit(event, path, signature, parameterNames.length);
+            }
+
+            releaseArguments(argumentValues);
+
+            if (!completed) {
+                release(requestContext);
+            }
+        }
+    }
+
+    /**
+     * Returns the service instance used by a request to its provider and
+     * clears the current thread's request context. Called once the result of
+     * the request has been written, since lazy and asynchronous results may
+     * still depend on the instance.
+     */
+    public void release(RequestContext requestContext) {
+        RequestContext.set(null);
+
+        WebService service = requestContext.service;
+
+        if (service != null) {
+            requestContext.service = null;
+
+            serviceProvider.release(service);
+        }
+    }
+
+    private Object[] acquireArguments() {
+        if (parameterNames.length == 0) {
+            return EMPTY_ARGUMENTS;
+        }
+
+        Object[] arguments = argumentBuffer.get();
+
+        if (arguments == null) {
+            arguments = new Object[parameterNames.length];
+        } else {
+            argumentBuffer.set(null);
+        }
+
+        return arguments;
+    }
+
+    private void releaseArguments(Object[] arguments) {
+        if (arguments.length > 0) {
+            Arrays.fill(arguments, null);
+
+            argumentBuffer.set(arguments);
+        }
+    }
+
+    private Object invoke(WebService service, Object[] arguments) {
+        try {
+            if (dispatcher != null) {
+                return dispatcher.invoke(index, service, arguments);
+            }
+
+            return (Object)invoker.invokeExact(service, arguments);
+        } catch (Throwable throwable) {
+            throw new RuntimeException(throwable);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics collected for a service method.
+ */
+class HandlerMetrics implements HandlerMetricsMBean {
+    private String verb;
+    private String path;
+    private String handler;
+
+    private ConcurrencyLimiter concurrencyLimiter;
+
+    private LongAdder callCount = new LongAdder();
+    private LongAdder errorCount = new LongAdder();
+    private LongAdder rejectedCount = new LongAdder();
+    private LongAdder inFlightCount = new LongAdder();
+    private LongAdder responseBytes = new LongAdder();
+
+    private LatencyHistogram latency = new LatencyHistogram();
+    private LatencyHistogram[] phaseLatencies = new LatencyHistogram[RequestTiming.Phase.VALUES.length];
+
+    public HandlerMetrics(String verb, String path, String handler, ConcurrencyLimiter concurrencyLimiter) {
+        this.verb = verb;
+        this.path = path;
+        this.handler = handler;
+        this.concurrencyLimiter = concurrencyLimiter;
+
+        for (int i = 0; i < phaseLatencies.length; i++) {
+            phaseLatencies[i] = new LatencyHistogram();
+        }
+    }
+
+    public void callStarted() {
+        inFlightCount.increment();
+    }
+
+    public void callRejected() {
+        rejectedCount.increment();
+    }
+
+    public void callCompleted(long nanoseconds, boolean error, long bytes, RequestTiming requestTiming) {
+        inFlightCount.decrement();
+
+        callCount.increment();
+
+        if (error) {
+            errorCount.increment();
+        }
+
+        responseBytes.add(bytes);
+
+        latency.record(TimeUnit.NANOSECONDS.toMicros(nanoseconds));
+
+        if (requestTiming != null) {
+            for (int i = 0; i < phaseLatencies.length; i++) {
+                phaseLatencies[i].record(TimeUnit.NANOSECONDS.toMicros(requestTiming.getDuration(RequestTiming.Phase.VALUES[i])));
+            }
+        }
+    }
+
+    @Override
+    public String getVerb() {
+        return verb;
+    }
+
+    @Override
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public String getHandler() {
+        return handler;
+    }
+
+    @Override
+    public long getCallCount() {
+        return callCount.sum();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errorCount.sum();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    @Override
+    public int getConcurrencyLimit() {
+        return (concurrencyLimiter == null) ? 0 : concurrencyLimiter.getLimit();
+    }
+
+    @Override
+    public long getInFlightCount() {
+        return inFlightCount.sum();
+    }
+
+    @Override
+    public long getResponseBytes() {
+        return responseBytes.sum();
+    }
+
+    @Override
+    public double getMeanLatency() {
+        return latency.getMean() / 1000;
+    }
+
+    @Override
+    public double getMedianLatency() {
+        return latency.getPercentile(50) / 1000.0;
+    }
+
+    @Override
+    public double get95thPercentileLatency() {
+        return latency.getPercentile(95) / 1000.0;
+    }
+
+    @Override
+    public double get99thPercentileLatency() {
+        return latency.getPercentile(99) / 1000.0;
+    }
+
+    @Override
+    public double get999thPercentileLatency() {
+        return latency.getPercentile(99.9) / 1000.0;
+    }
+
+    @Override
+    public double getMaxLatency() {
+        return latency.getMax() / 1000.0;
+    }
+
+    @Override
+    public Map<String, Double> getMeanPhaseLatencies() {
+        LinkedHashMap<String, Double> map = new LinkedHashMap<>();
+
+        for (int i = 0; i < phaseLatencies.length; i++) {
+            map.put(RequestTiming.Phase.VALUES[i].name, phaseLatencies[i].getMean() / 1000);
+        }
+
+        return map;
+    }
+
+    @Override
+    public Map<String, Double> get99thPercentilePhaseLatencies() {
+        LinkedHashMap<String, Double> map = new LinkedHashMap<>();
+
+        for (int i = 0; i < phaseLatencies.length; i++) {
+            map.put(RequestTiming.Phase.VALUES[i].name, phaseLatencies[i].getPercentile(99) / 1000.0);
+        }
+
+        return map;
+    }
+
+    public Map<String, Object> toMap() {
+        LinkedHashMap<String, Object> map = new LinkedHashMap<>();
+
+        map.put("verb", getVerb());
+        map.put("path", getPath());
+        map.put("handler", getHandler());
+        map.put("callCount", getCallCount());
+        map.put("errorCount", getErrorCount());
+        map.put("rejectedCount", getRejectedCount());
+        map.put("concurrencyLimit", getConcurrencyLimit());
+        map.put("inFlightCount", getInFlightCount());
+        map.put("responseBytes", getResponseBytes());
+        map.put("meanLatency", getMeanLatency());
+        map.put("medianLatency", getMedianLatency());
+        map.put("95thPercentileLatency", get95thPercentileLatency());
+        map.put("99thPercentileLatency", get99thPercentileLatency());
+        map.put("999thPercentileLatency", get999thPercentileLatency());
+        map.put("maxLatency", getMaxLatency());
+        map.put("meanPhaseLatencies", getMeanPhaseLatencies());
+        map.put("99thPercentilePhaseLatencies", get99thPercentilePhaseLatencies());
+
+        return map;
+    }
+}
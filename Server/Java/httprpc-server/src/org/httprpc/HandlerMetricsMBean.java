@@ -0,0 +1,163 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.util.Map;
+
+/**
+ * Management interface for the metrics collected for a service method.
+ * Latencies are reported in milliseconds and measured from the time a request
+ * is received until its response has been written.
+ */
+public interface HandlerMetricsMBean {
+    /**
+     * Returns the HTTP verb associated with the method.
+     *
+     * @return
+     * The HTTP verb associated with the method.
+     */
+    public String getVerb();
+
+    /**
+     * Returns the path associated with the method.
+     *
+     * @return
+     * The path associated with the method.
+     */
+    public String getPath();
+
+    /**
+     * Returns the signature of the method.
+     *
+     * @return
+     * The method's name, followed by its parameter types.
+     */
+    public String getHandler();
+
+    /**
+     * Returns the number of completed calls.
+     *
+     * @return
+     * The number of completed calls.
+     */
+    public long getCallCount();
+
+    /**
+     * Returns the number of calls that failed with a server error.
+     *
+     * @return
+     * The number of calls that failed with a server error.
+     */
+    public long getErrorCount();
+
+    /**
+     * Returns the number of calls rejected because the method's concurrency
+     * limit was reached.
+     *
+     * @return
+     * The number of rejected calls.
+     */
+    public long getRejectedCount();
+
+    /**
+     * Returns the current concurrency limit of the method.
+     *
+     * @return
+     * The current concurrency limit, or 0 if the method's concurrency is not
+     * limited.
+     */
+    public int getConcurrencyLimit();
+
+    /**
+     * Returns the number of calls currently in progress.
+     *
+     * @return
+     * The number of calls currently in progress.
+     */
+    public long getInFlightCount();
+
+    /**
+     * Returns the total number of bytes written in response to calls.
+     *
+     * @return
+     * The total number of response bytes.
+     */
+    public long getResponseBytes();
+
+    /**
+     * Returns the mean latency.
+     *
+     * @return
+     * The mean latency, in milliseconds.
+     */
+    public double getMeanLatency();
+
+    /**
+     * Returns the median latency.
+     *
+     * @return
+     * The median latency, in milliseconds.
+     */
+    public double getMedianLatency();
+
+    /**
+     * Returns the 95th percentile latency.
+     *
+     * @return
+     * The 95th percentile latency, in milliseconds.
+     */
+    public double get95thPercentileLatency();
+
+    /**
+     * Returns the 99th percentile latency.
+     *
+     * @return
+     * The 99th percentile latency, in milliseconds.
+     */
+    public double get99thPercentileLatency();
+
+    /**
+     * Returns the 99.9th percentile latency.
+     *
+     * @return
+     * The 99.9th percentile latency, in milliseconds.
+     */
+    public double get999thPercentileLatency();
+
+    /**
+     * Returns the maximum latency.
+     *
+     * @return
+     * The maximum latency, in milliseconds.
+     */
+    public double getMaxLatency();
+
+    /**
+     * Returns the mean time spent in each phase of a call; namely, "route",
+     * "queue", "populate", "spool", "invoke", "serialize", and "close".
+     *
+     * @return
+     * A map of phase name to mean latency, in milliseconds.
+     */
+    public Map<String, Double> getMeanPhaseLatencies();
+
+    /**
+     * Returns the 99th percentile time spent in each phase of a call.
+     *
+     * @return
+     * A map of phase name to 99th percentile latency, in milliseconds.
+     */
+    public Map<String, Double> get99thPercentilePhaseLatencies();
+}
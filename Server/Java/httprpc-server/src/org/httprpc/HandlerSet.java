@@ -0,0 +1,150 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Set of overloaded handler methods associated with a resource and verb.
+ */
+class HandlerSet {
+    private ArrayList<Handler> handlers = new ArrayList<>();
+
+    private String[] parameterNames = new String[0];
+    private long[] parameterMasks = new long[0];
+
+    // Resolutions indexed by the set of declared parameters that were provided
+    private Handler[] resolutions = null;
+
+    private static final int MAX_RESOLVED_PARAMETERS = 8;
+
+    public void add(Handler handler) {
+        handlers.add(handler);
+
+        // Merge parameter names
+        LinkedHashSet<String> nameSet = new LinkedHashSet<>(Arrays.asList(parameterNames));
+
+        nameSet.addAll(Arrays.asList(handler.parameterNames));
+
+        parameterNames = nameSet.toArray(new String[nameSet.size()]);
+
+        // Recompute parameter masks
+        int n = handlers.size();
+
+        parameterMasks = new long[n];
+
+        if (parameterNames.length <= Long.SIZE) {
+            List<String> nameList = Arrays.asList(parameterNames);
+
+            for (int i = 0; i < n; i++) {
+                String[] handlerParameterNames = handlers.get(i).parameterNames;
+
+                for (int j = 0; j < handlerParameterNames.length; j++) {
+                    parameterMasks[i] |= 1L << nameList.indexOf(handlerParameterNames[j]);
+                }
+            }
+        }
+
+        resolutions = (parameterNames.length <= MAX_RESOLVED_PARAMETERS) ? new Handler[1 << parameterNames.length] : null;
+    }
+
+    public ServiceProvider getServiceProvider() {
+        return handlers.isEmpty() ? null : handlers.get(0).serviceProvider;
+    }
+
+    public Handler resolve(RequestArguments arguments) {
+        if (handlers.size() == 1) {
+            return handlers.get(0);
+        }
+
+        if (parameterNames.length > Long.SIZE) {
+            return scan(arguments);
+        }
+
+        // Identify the provided arguments
+        long mask = 0;
+
+        for (int i = 0; i < parameterNames.length; i++) {
+            String name = parameterNames[i];
+
+            if (arguments.contains(name)) {
+                mask |= 1L << i;
+            }
+        }
+
+        if (resolutions == null) {
+            return resolve(mask);
+        }
+
+        Handler handler = resolutions[(int)mask];
+
+        if (handler == null) {
+            handler = resolve(mask);
+
+            resolutions[(int)mask] = handler;
+        }
+
+        return handler;
+    }
+
+    private Handler resolve(long mask) {
+        Handler handler = null;
+
+        int count = -1;
+
+        for (int i = 0, n = handlers.size(); i < n; i++) {
+            int c = Long.bitCount(parameterMasks[i] & mask);
+
+            if (c > count) {
+                count = c;
+
+                handler = handlers.get(i);
+            }
+        }
+
+        return handler;
+    }
+
+    private Handler scan(RequestArguments arguments) {
+        Handler handler = null;
+
+        int n = -1;
+
+        for (Handler candidate : handlers) {
+            String[] parameterNames = candidate.parameterNames;
+
+            int count = 0;
+
+            for (int i = 0; i < parameterNames.length; i++) {
+                String name = parameterNames[i];
+
+                if (arguments.contains(name)) {
+                    count++;
+                }
+            }
+
+            if (count > n) {
+                n = count;
+
+                handler = candidate;
+            }
+        }
+
+        return handler;
+    }
+}
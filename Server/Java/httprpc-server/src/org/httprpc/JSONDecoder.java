@@ -0,0 +1,492 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.httprpc;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Incremental JSON decoder.
+ * <p>
+ * Objects are decoded as maps and arrays as lists. Arrays that contain only
+ * numbers are decoded as number lists, which store their elements as
+ * primitive values.
+ */
+class JSONDecoder {
+    // Number list
+    static class NumberList extends AbstractList<Number> {
+        private long[] longValues = new long[16];
+        private double[] doubleValues = null;
+
+        private int size = 0;
+
+        public void addLong(long value) {
+            if (doubleValues != null) {
+                addDouble(value);
+            } else {
+                if (size == longValues.length) {
+                    longValues = Arrays.copyOf(longValues, size * 2);
+                }
+
+                longValues[size++] = value;
+            }
+        }
+
+        public void addDouble(double value) {
+            if (doubleValues == null) {
+                // Promote existing values
+                doubleValues = new double[longValues.length];
+
+                for (int i = 0; i < size; i++) {
+                    doubleValues[i] = longValues[i];
+                }
+
+                longValues = null;
+            }
+
+            if (size == doubleValues.length) {
+                doubleValues = Arrays.copyOf(doubleValues, size * 2);
+            }
+
+            doubleValues[size++] = value;
+        }
+
+        @Override
+        public Number get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException();
+            }
+
+            return (doubleValues == null) ? (Number)Long.valueOf(longValues[index]) : (Number)Double.valueOf(doubleValues[index]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        public double[] toDoubleArray() {
+            if (doubleValues != null) {
+                return Arrays.copyOf(doubleValues, size);
+            }
+
+            double[] array = new double[size];
+
+            for (int i = 0; i < size; i++) {
+                array[i] = longValues[i];
+            }
+
+            return array;
+        }
+
+        public long[] toLongArray() {
+            if (doubleValues != null) {
+                throw new NumberFormatException("Array contains non-integral values.");
+            }
+
+            return Arrays.copyOf(longValues, size);
+        }
+
+        public int[] toIntArray() {
+            long[] longValues = toLongArray();
+
+            int[] array = new int[size];
+
+            for (int i = 0; i < size; i++) {
+                long value = longValues[i];
+
+                if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                    throw new NumberFormatException("Value is out of range.");
+                }
+
+                array[i] = (int)value;
+            }
+
+            return array;
+        }
+    }
+
+    private Reader reader = null;
+
+    private char[] buffer = new char[BUFFER_SIZE];
+    private int offset = 0;
+    private int count = 0;
+
+    private int c = EOF;
+    private int depth = 0;
+
+    private StringBuilder valueBuilder = new StringBuilder();
+
+    private boolean integral = false;
+    private long longValue = 0;
+    private double doubleValue = 0;
+
+    private static final int EOF = -1;
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAXIMUM_DEPTH = 512;
+
+    private static final String TRUE_KEYWORD = "true";
+    private static final String FALSE_KEYWORD = "false";
+    private static final String NULL_KEYWORD = "null";
+
+    /**
+     * Reads a value from a character stream.
+     *
+     * @param reader
+     * The source reader.
+     *
+     * @return
+     * The decoded value.
+     *
+     * @throws IOException
+     * If an exception occurs while reading, or if the stream does not contain
+     * a single well-formed JSON value.
+     */
+    public Object readValue(Reader reader) throws IOException {
+        if (reader == null) {
+            throw new IllegalArgumentException();
+        }
+
+        this.reader = reader;
+
+        offset = 0;
+        count = 0;
+
+        depth = 0;
+
+        read();
+        skipWhitespace();
+
+        Object value = readValue();
+
+        skipWhitespace();
+
+        if (c != EOF) {
+            throw new IOException("Unexpected character in input stream.");
+        }
+
+        return value;
+    }
+
+    private Object readValue() throws IOException {
+        Object value;
+        if (c == '"') {
+            value = readString();
+        } else if (c == '{') {
+            value = readObject();
+        } else if (c == '[') {
+            value = readArray();
+        } else if (c == '-' || isDigit(c)) {
+            readNumber();
+
+            value = integral ? (Number)Long.valueOf(longValue) : (Number)Double.valueOf(doubleValue);
+        } else if (c == 't') {
+            readKeyword(TRUE_KEYWORD);
+
+            value = Boolean.TRUE;
+        } else if (c == 'f') {
+            readKeyword(FALSE_KEYWORD);
+
+            value = Boolean.FALSE;
+        } else if (c == 'n') {
+            readKeyword(NULL_KEYWORD);
+
+            value = null;
+        } else {
+            throw new IOException("Unexpected character in input stream.");
+        }
+
+        return value;
+    }
+
+    private LinkedHashMap<String, Object> readObject() throws IOException {
+        enter();
+
+        LinkedHashMap<String, Object> map = new LinkedHashMap<>();
+
+        read();
+        skipWhitespace();
+
+        if (c == '}') {
+            read();
+        } else {
+            while (true) {
+                if (c != '"') {
+                    throw new IOException("Invalid key.");
+                }
+
+                String key = readString();
+
+                skipWhitespace();
+
+                if (c != ':') {
+                    throw new IOException("Missing key/value delimiter.");
+                }
+
+                read();
+                skipWhitespace();
+
+                map.put(key, readValue());
+
+                skipWhitespace();
+
+                if (c == ',') {
+                    read();
+                    skipWhitespace();
+                } else if (c == '}') {
+                    read();
+                    break;
+                } else {
+                    throw new IOException("Unterminated object.");
+                }
+            }
+        }
+
+        depth--;
+
+        return map;
+    }
+
+    private List<?> readArray() throws IOException {
+        enter();
+
+        List<Object> list = null;
+        NumberList numberList = null;
+
+        read();
+        skipWhitespace();
+
+        if (c == ']') {
+            read();
+        } else {
+            while (true) {
+                if ((c == '-' || isDigit(c)) && list == null) {
+                    // Store numeric elements without boxing
+                    if (numberList == null) {
+                        numberList = new NumberList();
+                    }
+
+                    readNumber();
+
+                    if (integral) {
+                        numberList.addLong(longValue);
+                    } else {
+                        numberList.addDouble(doubleValue);
+                    }
+                } else {
+                    if (list == null) {
+                        list = new ArrayList<>();
+
+                        if (numberList != null) {
+                            list.addAll(numberList);
+
+                            numberList = null;
+                        }
+                    }
+
+                    list.add(readValue());
+                }
+
+                skipWhitespace();
+
+                if (c == ',') {
+                    read();
+                    skipWhitespace();
+                } else if (c == ']') {
+                    read();
+                    break;
+                } else {
+                    throw new IOException("Unterminated array.");
+                }
+            }
+        }
+
+        depth--;
+
+        if (numberList != null) {
+            return numberList;
+        }
+
+        return (list == null) ? new ArrayList<>() : list;
+    }
+
+    private String readString() throws IOException {
+        valueBuilder.setLength(0);
+
+        read();
+
+        while (c != EOF && c != '"') {
+            if (c < 0x20) {
+                throw new IOException("Illegal character in input stream.");
+            }
+
+            if (c == '\\') {
+                read();
+
+                if (c == 'b') {
+                    c = '\b';
+                } else if (c == 'f') {
+                    c = '\f';
+                } else if (c == 'r') {
+                    c = '\r';
+                } else if (c == 'n') {
+                    c = '\n';
+                } else if (c == 't') {
+                    c = '\t';
+                } else if (c == 'u') {
+                    int value = 0;
+
+                    for (int i = 0; i < 4; i++) {
+                        read();
+
+                        int digit = Character.digit(c, 16);
+
+                        if (c == EOF || digit == -1) {
+                            throw new IOException("Invalid Unicode escape sequence.");
+                        }
+
+                        value = (value << 4) | digit;
+                    }
+
+                    c = value;
+                } else if (c != '"' && c != '\\' && c != '/') {
+                    throw new IOException("Unsupported escape sequence in input stream.");
+                }
+            }
+
+            valueBuilder.append((char)c);
+
+            read();
+        }
+
+        if (c != '"') {
+            throw new IOException("Unterminated string in input stream.");
+        }
+
+        read();
+
+        return valueBuilder.toString();
+    }
+
+    private void readNumber() throws IOException {
+        valueBuilder.setLength(0);
+
+        integral = true;
+
+        boolean negative = false;
+
+        if (c == '-') {
+            negative = true;
+
+            valueBuilder.append((char)c);
+
+            read();
+        }
+
+        long value = 0;
+        int digits = 0;
+
+        while (isDigit(c)) {
+            value = value * 10 + (c - '0');
+            digits++;
+
+            valueBuilder.append((char)c);
+
+            read();
+        }
+
+        if (digits == 0) {
+            throw new IOException("Invalid number.");
+        }
+
+        while (c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-' || isDigit(c)) {
+            integral = false;
+
+            valueBuilder.append((char)c);
+
+            read();
+        }
+
+        if (integral && digits < 19) {
+            longValue = negative ? -value : value;
+        } else {
+            String number = valueBuilder.toString();
+
+            try {
+                if (integral) {
+                    longValue = Long.parseLong(number);
+                } else {
+                    doubleValue = Double.parseDouble(number);
+                }
+            } catch (NumberFormatException exception) {
+                if (!integral) {
+                    throw new IOException(exception);
+                }
+
+                // Value is out of range for a long
+                integral = false;
+
+                doubleValue = Double.parseDouble(number);
+            }
+        }
+    }
+
+    private void readKeyword(String keyword) throws IOException {
+        for (int i = 0, n = keyword.length(); i < n; i++) {
+            if (c != keyword.charAt(i)) {
+                throw new IOException("Invalid keyword.");
+            }
+
+            read();
+        }
+    }
+
+    private void enter() throws IOException {
+        if (++depth > MAXIMUM_DEPTH) {
+            throw new IOException("Maximum nesting depth exceeded.");
+        }
+    }
+
+    private void skipWhitespace() throws IOException {
+        while (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+            read();
+        }
+    }
+
+    private void read() throws IOException {
+        if (offset == count) {
+            count = reader.read(buffer, 0, buffer.length);
+            offset = 0;
+
+            if (count <= 0) {
+                count = 0;
+                c = EOF;
+
+                return;
+            }
+        }
+
+        c = buffer[offset++];
+    }
+
+    private static boolean isDigit(int c) {
+        return (c >= '0' && c <= '9');
+    }
+}
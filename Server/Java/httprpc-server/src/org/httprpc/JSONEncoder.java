@@ -0,0 +1,224 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Response encoder that produces JSON.
+ */
+class JSONEncoder implements ResponseEncoder {
+    private int flushInterval;
+
+    public JSONEncoder() {
+        this(0);
+    }
+
+    public JSONEncoder(int flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    @Override
+    public String getContentType() {
+        return "application/json; charset=UTF-8";
+    }
+
+    @Override
+    public void writeValue(Object value, OutputStream outputStream) throws IOException {
+        // Write errors propagate immediately, without the per-value flush that PrintWriter.checkError() performs
+        Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+
+        writeValue(writer, value, 0);
+
+        writer.flush();
+    }
+
+    void writeValue(Writer writer, Object value, int depth) throws IOException {
+        writeValue(writer, value, depth, true);
+    }
+
+    private void writeValue(Writer writer, Object value, int depth, boolean outermost) throws IOException {
+        if (value == null) {
+            writer.append(null);
+        } else if (value instanceof CharSequence) {
+            CharSequence string = (CharSequence)value;
+
+            writer.append("\"");
+
+            for (int i = 0, n = string.length(); i < n; i++) {
+                char c = string.charAt(i);
+
+                if (c == '"' || c == '\\') {
+                    writer.append("\\" + c);
+                } else if (c == '\b') {
+                    writer.append("\\b");
+                } else if (c == '\f') {
+                    writer.append("\\f");
+                } else if (c == '\n') {
+                    writer.append("\\n");
+                } else if (c == '\r') {
+                    writer.append("\\r");
+                } else if (c == '\t') {
+                    writer.append("\\t");
+                } else {
+                    writer.append(c);
+                }
+            }
+
+            writer.append("\"");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            writer.append(String.valueOf(value));
+        } else if (value instanceof double[]) {
+            writeArray(writer, value, ((double[])value).length, depth);
+        } else if (value instanceof long[]) {
+            writeArray(writer, value, ((long[])value).length, depth);
+        } else if (value instanceof int[]) {
+            writeArray(writer, value, ((int[])value).length, depth);
+        } else if (value instanceof boolean[]) {
+            writeArray(writer, value, ((boolean[])value).length, depth);
+        } else if (value instanceof List<?>) {
+            List<?> list = (List<?>)value;
+
+            try {
+                writer.append("[");
+
+                depth++;
+
+                int i = 0;
+
+                for (Object element : list) {
+                    if (i > 0) {
+                        writer.append(",");
+                    }
+
+                    writer.append("\n");
+
+                    indent(writer, depth);
+
+                    writeValue(writer, element, depth, false);
+
+                    i++;
+
+                    // Push streamed content to the client, which also detects disconnection promptly; only
+                    // the outermost list is counted, so that nested lists do not flush on every element
+                    if (outermost && flushInterval > 0 && (i == 1 || i % flushInterval == 0)) {
+                        writer.flush();
+                    }
+                }
+
+                depth--;
+
+                writer.append("\n");
+
+                indent(writer, depth);
+
+                writer.append("]");
+            } finally {
+                RequestTiming.close(list);
+            }
+        } else if (value instanceof Map<?, ?>) {
+            Map<?, ?> map = (Map<?, ?>)value;
+
+            try {
+                writer.append("{");
+
+                depth++;
+
+                int i = 0;
+
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    if (i > 0) {
+                        writer.append(",");
+                    }
+
+                    writer.append("\n");
+
+                    Object key = entry.getKey();
+
+                    if (!(key instanceof String)) {
+                        throw new IOException("Invalid key type.");
+                    }
+
+                    indent(writer, depth);
+
+                    writer.append("\"" + key + "\": ");
+
+                    writeValue(writer, entry.getValue(), depth, outermost);
+
+                    i++;
+                }
+
+                depth--;
+
+                writer.append("\n");
+
+                indent(writer, depth);
+
+                writer.append("}");
+            } finally {
+                RequestTiming.close(map);
+            }
+        } else {
+            throw new IOException("Invalid value type.");
+        }
+    }
+
+    private static void writeArray(Writer writer, Object array, int length, int depth) throws IOException {
+        writer.append("[");
+
+        depth++;
+
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                writer.append(",");
+            }
+
+            writer.append("\n");
+
+            indent(writer, depth);
+
+            // Write elements directly to avoid boxing
+            if (array instanceof double[]) {
+                writer.write(String.valueOf(((double[])array)[i]));
+            } else if (array instanceof long[]) {
+                writer.write(String.valueOf(((long[])array)[i]));
+            } else if (array instanceof int[]) {
+                writer.write(String.valueOf(((int[])array)[i]));
+            } else {
+                writer.write(String.valueOf(((boolean[])array)[i]));
+            }
+        }
+
+        depth--;
+
+        writer.append("\n");
+
+        indent(writer, depth);
+
+        writer.append("]");
+    }
+
+    static void indent(Writer writer, int depth) throws IOException {
+        for (int i = 0; i < depth; i++) {
+            writer.append("  ");
+        }
+    }
+}
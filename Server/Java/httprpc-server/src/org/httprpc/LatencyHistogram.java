@@ -0,0 +1,129 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram. Values are recorded in microseconds into
+ * log-linear buckets: values below 16 are counted exactly, and each
+ * subsequent power of two is divided into 16 sub-buckets, bounding the
+ * relative error of a reported percentile at about 6%.
+ */
+class LatencyHistogram {
+    private AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    private LongAdder count = new LongAdder();
+    private LongAdder sum = new LongAdder();
+    private LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private static final int MAX_EXPONENT = 40;
+
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT * (MAX_EXPONENT - SUB_BUCKET_BITS + 2);
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+
+        counts.incrementAndGet(getIndex(value));
+
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMean() {
+        long count = this.count.sum();
+
+        return (count == 0) ? 0 : (double)sum.sum() / count;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException();
+        }
+
+        // Take a snapshot of the buckets, which may be updated concurrently
+        long[] snapshot = new long[BUCKET_COUNT];
+
+        long total = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+
+            total += snapshot[i];
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max((long)Math.ceil(percentile / 100 * total), 1);
+
+        long n = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            n += snapshot[i];
+
+            if (n >= rank) {
+                // Report the upper bound of the bucket, but never more than the largest recorded value
+                return Math.min(getUpperBound(i), getMax());
+            }
+        }
+
+        return getMax();
+    }
+
+    static int getIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int)value;
+        }
+
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_EXPONENT);
+
+        if (exponent == MAX_EXPONENT && value >= 1L << (MAX_EXPONENT + 1)) {
+            return BUCKET_COUNT - 1;
+        }
+
+        int subBucket = (int)(value >> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKET_COUNT;
+
+        return SUB_BUCKET_COUNT * (exponent - SUB_BUCKET_BITS + 1) + subBucket;
+    }
+
+    static long getUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKET_COUNT;
+
+        return ((long)(SUB_BUCKET_COUNT + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
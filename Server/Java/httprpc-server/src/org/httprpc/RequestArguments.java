@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Provides the argument values of a request. Subclasses supply query and form
+ * parameters and uploaded files.
+ */
+class RequestArguments {
+    private HashMap<String, String> pathVariables;
+    private Map<?, ?> body;
+
+    public RequestArguments(Map<?, ?> body, HashMap<String, String> pathVariables) {
+        this.body = body;
+        this.pathVariables = pathVariables;
+    }
+
+    public boolean contains(String name) {
+        return (pathVariables != null && pathVariables.containsKey(name))
+            || (body != null && body.containsKey(name))
+            || getParameter(name) != null
+            || containsFile(name);
+    }
+
+    public Object getValue(String name) {
+        if (pathVariables != null) {
+            String value = pathVariables.get(name);
+
+            if (value != null) {
+                return value;
+            }
+        }
+
+        if (body != null) {
+            Object value = body.get(name);
+
+            if (value != null) {
+                return value;
+            }
+        }
+
+        return getParameter(name);
+    }
+
+    public Object getValues(String name) {
+        if (pathVariables != null) {
+            String value = pathVariables.get(name);
+
+            if (value != null) {
+                return new String[] {value};
+            }
+        }
+
+        if (body != null) {
+            Object value = body.get(name);
+
+            if (value != null) {
+                return value;
+            }
+        }
+
+        return getParameterValues(name);
+    }
+
+    protected String getParameter(String name) {
+        return null;
+    }
+
+    protected String[] getParameterValues(String name) {
+        return null;
+    }
+
+    protected boolean containsFile(String name) {
+        return false;
+    }
+
+    public URL getFile(String name) throws IOException {
+        return null;
+    }
+
+    public List<URL> getFiles(String name) throws IOException {
+        return Collections.emptyList();
+    }
+
+    public void deleteFiles() {
+        // No-op
+    }
+
+    static Map<?, ?> readBody(Reader reader) {
+        Object value;
+        try {
+            value = new JSONDecoder().readValue(reader);
+        } catch (IOException exception) {
+            throw new IllegalArgumentException("Invalid request body.", exception);
+        }
+
+        if (!(value instanceof Map<?, ?>)) {
+            throw new IllegalArgumentException("Request body is not an object.");
+        }
+
+        return (Map<?, ?>)value;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Holder for the metadata associated with the request being executed by the
+ * current thread.
+ */
+class RequestContext {
+    public final Locale locale;
+
+    public final String userName;
+    public final Set<String> userRoles;
+
+    public final Long deadline;
+
+    // Set by the handler thread and read by the thread that writes the result
+    public volatile String resultVersion = null;
+
+    public WebService service = null;
+
+    private static final ThreadLocal<RequestContext> current = new ThreadLocal<>();
+
+    public RequestContext(Locale locale, String userName, Set<String> userRoles, Long deadline) {
+        this.locale = locale;
+        this.userName = userName;
+        this.userRoles = userRoles;
+        this.deadline = deadline;
+    }
+
+    public static RequestContext get() {
+        return current.get();
+    }
+
+    public static void set(RequestContext requestContext) {
+        if (requestContext == null) {
+            current.remove();
+        } else {
+            current.set(requestContext);
+        }
+    }
+}
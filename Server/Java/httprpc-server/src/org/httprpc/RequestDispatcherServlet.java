@@ -14,35 +14,72 @@
 
 package org.httprpc;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.io.Writer;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
-import java.lang.reflect.Parameter;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.Principal;
+import java.sql.SQLException;
 import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 import javax.servlet.annotation.MultipartConfig;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
 import javax.servlet.http.Part;
 
+import org.httprpc.sql.ResultSetAdapter;
+
 /**
  * Servlet that dispatches HTTP-RPC web service requests.
  */
@@ -50,10 +87,133 @@ import javax.servlet.http.Part;
 public class RequestDispatcherServlet extends HttpServlet {
     private static final long serialVersionUID = 0;
 
-    // Resource structure
-    private static class Resource {
-        public final HashMap<String, LinkedList<Method>> handlerMap = new HashMap<>();
-        public final HashMap<String, Resource> resources = new HashMap<>();
+    // Servlet request arguments
+    private static class ServletRequestArguments extends RequestArguments {
+        private HttpServletRequest request;
+
+        private HashMap<String, LinkedList<Part>> partMap = null;
+        private LinkedList<File> files = null;
+
+        public ServletRequestArguments(HttpServletRequest request, HashMap<String, String> pathVariables) throws ServletException, IOException {
+            super(getBody(request), pathVariables);
+
+            this.request = request;
+
+            String contentType = request.getContentType();
+
+            if (contentType != null && contentType.startsWith("multipart/form-data")) {
+                partMap = new HashMap<>();
+
+                for (Part part : request.getParts()) {
+                    String submittedFileName = part.getSubmittedFileName();
+
+                    if (submittedFileName == null || submittedFileName.length() == 0) {
+                        continue;
+                    }
+
+                    String name = part.getName();
+
+                    LinkedList<Part> partList = partMap.get(name);
+
+                    if (partList == null) {
+                        partList = new LinkedList<>();
+                        partMap.put(name, partList);
+                    }
+
+                    partList.add(part);
+                }
+            }
+        }
+
+        private static Map<?, ?> getBody(HttpServletRequest request) throws IOException {
+            String contentType = request.getContentType();
+
+            if (contentType != null && contentType.startsWith("application/json")) {
+                // Decode the body directly from the request stream
+                return readBody(request.getReader());
+            }
+
+            return null;
+        }
+
+        @Override
+        protected String getParameter(String name) {
+            return request.getParameter(name);
+        }
+
+        @Override
+        protected String[] getParameterValues(String name) {
+            return request.getParameterValues(name);
+        }
+
+        @Override
+        protected boolean containsFile(String name) {
+            return (partMap != null && partMap.containsKey(name));
+        }
+
+        @Override
+        public URL getFile(String name) throws IOException {
+            LinkedList<Part> partList = (partMap == null) ? null : partMap.get(name);
+
+            return (partList == null) ? null : write(partList.getFirst());
+        }
+
+        @Override
+        public List<URL> getFiles(String name) throws IOException {
+            LinkedList<Part> partList = (partMap == null) ? null : partMap.get(name);
+
+            if (partList == null) {
+                return Collections.emptyList();
+            }
+
+            ArrayList<URL> fileList = new ArrayList<>(partList.size());
+
+            for (Part part : partList) {
+                fileList.add(write(part));
+            }
+
+            return fileList;
+        }
+
+        private URL write(Part part) throws IOException {
+            // Spool the part to a temporary file only when a handler requests it
+            File file = File.createTempFile(part.getName(), "_" + part.getSubmittedFileName());
+
+            if (files == null) {
+                files = new LinkedList<>();
+            }
+
+            files.add(file);
+
+            RequestTiming requestTiming = RequestTiming.get();
+
+            if (requestTiming != null) {
+                requestTiming.end(RequestTiming.Phase.POPULATE);
+            }
+
+            Object event = FlightRecorderEvent.MULTIPART_SPOOL.begin();
+
+            part.write(file.getAbsolutePath());
+
+            if (event != null) {
+                FlightRecorderEvent.MULTIPART_SPOOL.commit(event, part.getName(), part.getSubmittedFileName(), part.getSize());
+            }
+
+            if (requestTiming != null) {
+                requestTiming.end(RequestTiming.Phase.SPOOL);
+            }
+
+            return file.toURI().toURL();
+        }
+
+        @Override
+        public void deleteFiles() {
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+        }
     }
 
     // User role set
@@ -80,488 +240,1808 @@ public class RequestDispatcherServlet extends HttpServlet {
         }
     }
 
-    private Class<?> serviceType = null;
-    private Resource root = null;
+    // Response that counts the bytes written to it
+    private static class MeteredResponse extends HttpServletResponseWrapper {
+        private MeteredOutputStream outputStream = null;
 
-    @Override
-    public void init() throws ServletException {
-        // Load service class
-        String serviceClassName = getServletConfig().getInitParameter("serviceClassName");
+        public MeteredResponse(HttpServletResponse response) {
+            super(response);
+        }
 
-        try {
-            serviceType = Class.forName(serviceClassName);
-        } catch (ClassNotFoundException exception) {
-            throw new ServletException(exception);
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                outputStream = new MeteredOutputStream(super.getOutputStream());
+            }
+
+            return outputStream;
         }
 
-        if (!WebService.class.isAssignableFrom(serviceType)) {
-            throw new ServletException("Invalid service type.");
+        public long getByteCount() {
+            return (outputStream == null) ? 0 : outputStream.byteCount;
         }
+    }
 
-        // Populate resource tree
-        root = new Resource();
+    // Metered output stream
+    private static class MeteredOutputStream extends ServletOutputStream {
+        private ServletOutputStream outputStream;
 
-        Method[] methods = serviceType.getMethods();
+        private long byteCount = 0;
 
-        for (int i = 0; i < methods.length; i++) {
-            Method method = methods[i];
+        public MeteredOutputStream(ServletOutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
 
-            RPC rpc = method.getAnnotation(RPC.class);
+        @Override
+        public void write(int b) throws IOException {
+            outputStream.write(b);
 
-            if (rpc != null) {
-                Resource resource = root;
+            byteCount++;
+        }
 
-                String[] components = rpc.path().split("/");
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            outputStream.write(b, off, len);
 
-                for (int j = 0; j < components.length; j++) {
-                    String component = components[j];
+            byteCount += len;
+        }
 
-                    if (component.length() == 0) {
-                        continue;
-                    }
+        @Override
+        public void flush() throws IOException {
+            outputStream.flush();
+        }
 
-                    Resource child = resource.resources.get(component);
+        @Override
+        public void close() throws IOException {
+            outputStream.close();
+        }
 
-                    if (child == null) {
-                        child = new Resource();
+        @Override
+        public boolean isReady() {
+            return outputStream.isReady();
+        }
 
-                        resource.resources.put(component, child);
-                    }
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            outputStream.setWriteListener(writeListener);
+        }
+    }
 
-                    resource = child;
-                }
+    // Output stream that counts the bytes written to it
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long byteCount = 0;
 
-                String key = rpc.method().toLowerCase();
+        public CountingOutputStream(OutputStream outputStream) {
+            super(outputStream);
+        }
 
-                LinkedList<Method> handlerList = resource.handlerMap.get(key);
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
 
-                if (handlerList == null) {
-                    handlerList = new LinkedList<>();
+            byteCount++;
+        }
 
-                    resource.handlerMap.put(key, handlerList);
-                }
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
 
-                handlerList.add(method);
-            }
+            byteCount += len;
         }
     }
 
-    @Override
-    protected void service(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-        // Look up resource
-        Resource resource = root;
+    // Exception thrown when a response is abandoned because the caller's deadline has passed
+    private static class DeadlineExceededException extends IOException {
+        private static final long serialVersionUID = 0;
 
-        String pathInfo = request.getPathInfo();
+        public DeadlineExceededException() {
+            super("Deadline exceeded.");
+        }
+    }
 
-        if (pathInfo != null) {
-            String[] components = pathInfo.split("/");
+    // Output stream that fails once the caller's deadline has passed
+    private static class DeadlineOutputStream extends FilterOutputStream {
+        private long deadline;
 
-            for (int j = 0; j < components.length; j++) {
-                String component = components[j];
+        public DeadlineOutputStream(OutputStream outputStream, long deadline) {
+            super(outputStream);
 
-                if (component.length() == 0) {
-                    continue;
-                }
+            this.deadline = deadline;
+        }
 
-                resource = resource.resources.get(component);
+        @Override
+        public void write(int b) throws IOException {
+            checkDeadline();
 
-                if (resource == null) {
-                    response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-                    return;
-                }
-            }
+            out.write(b);
         }
 
-        LinkedList<Method> handlerList = resource.handlerMap.get(request.getMethod().toLowerCase());
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            checkDeadline();
 
-        if (handlerList == null) {
-            response.setStatus(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
-            return;
+            out.write(b, off, len);
         }
 
-        // Set character encoding
-        if (request.getCharacterEncoding() == null) {
-            request.setCharacterEncoding("UTF-8");
+        private void checkDeadline() throws IOException {
+            if (System.nanoTime() - deadline > 0) {
+                throw new DeadlineExceededException();
+            }
         }
+    }
+
+    // Asynchronous request that is completed exactly once, either by its handler or by a timeout
+    private class AsyncRequest implements AsyncListener {
+        public final AsyncContext asyncContext;
 
-        // Populate parameter map
-        HashMap<String, LinkedList<String>> parameterMap = new HashMap<>();
+        private HttpServletRequest request;
+        private Handler handler;
+        private RequestArguments arguments;
+        private RequestTiming requestTiming;
+
+        private boolean expires = false;
 
-        Enumeration<String> parameterNames = request.getParameterNames();
+        private AtomicBoolean completed = new AtomicBoolean(false);
 
-        while (parameterNames.hasMoreElements()) {
-            String name = parameterNames.nextElement();
-            String[] values = request.getParameterValues(name);
+        public AsyncRequest(HttpServletRequest request, HttpServletResponse response, Handler handler,
+            RequestArguments arguments, RequestTiming requestTiming) {
+            this.request = request;
+            this.handler = handler;
+            this.arguments = arguments;
+            this.requestTiming = requestTiming;
 
-            LinkedList<String> valueList = new LinkedList<>();
+            asyncContext = request.startAsync(request, response);
 
-            for (int i = 0; i < values.length; i++) {
-                valueList.add(values[i]);
+            // Do not wait beyond the caller's deadline
+            long timeout = asyncTimeout;
+
+            Long deadline = (Long)request.getAttribute(DEADLINE_ATTRIBUTE);
+
+            if (deadline != null) {
+                long remaining = Math.max(TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()), 1);
+
+                if (remaining <= timeout) {
+                    timeout = remaining;
+
+                    expires = true;
+                }
             }
 
-            parameterMap.put(name, valueList);
+            asyncContext.setTimeout(timeout);
+            asyncContext.addListener(this);
+        }
+
+        public boolean isCompleted() {
+            return completed.get();
         }
 
-        // Populate file map
-        HashMap<String, LinkedList<File>> fileMap = new HashMap<>();
+        public void complete(boolean failed) {
+            if (completed.compareAndSet(false, true)) {
+                RequestDispatcherServlet.this.complete(request, (HttpServletResponse)asyncContext.getResponse(), handler, arguments, requestTiming, failed);
 
-        String contentType = request.getContentType();
+                asyncContext.complete();
+            }
+        }
 
-        if (contentType != null && contentType.startsWith("multipart/form-data")) {
-            for (Part part : request.getParts()) {
-                String submittedFileName = part.getSubmittedFileName();
+        public void abort(IOException exception) {
+            if (completed.compareAndSet(false, true)) {
+                RequestDispatcherServlet.this.complete(request, (HttpServletResponse)asyncContext.getResponse(), handler, arguments, requestTiming, true);
 
-                if (submittedFileName == null || submittedFileName.length() == 0) {
-                    continue;
-                }
+                // Completing the request would end a partial response as though it were whole, so fail a dispatch of it instead
+                request.setAttribute(ABORT_ATTRIBUTE, exception);
 
-                String name = part.getName();
+                asyncContext.dispatch();
+            }
+        }
 
-                LinkedList<File> fileList = fileMap.get(name);
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            if (completed.compareAndSet(false, true)) {
+                HttpServletResponse response = (HttpServletResponse)asyncContext.getResponse();
 
-                if (fileList == null) {
-                    fileList = new LinkedList<>();
-                    fileMap.put(name, fileList);
+                if (!response.isCommitted()) {
+                    response.resetBuffer();
+                    response.setStatus(expires ? AdmissionControl.GATEWAY_TIMEOUT : AdmissionControl.getTimeoutStatus((Long)request.getAttribute(DEADLINE_ATTRIBUTE)));
                 }
 
-                File file = File.createTempFile(part.getName(), "_" + part.getSubmittedFileName());
-                part.write(file.getAbsolutePath());
+                RequestDispatcherServlet.this.complete(request, response, handler, arguments, requestTiming, false);
 
-                fileList.add(file);
+                asyncContext.complete();
             }
         }
 
-        // Invoke handler method
-        Method method = getMethod(handlerList, parameterMap, fileMap);
+        @Override
+        public void onComplete(AsyncEvent event) {
+            // No-op
+        }
 
-        try {
-            Object result;
-            try {
-                WebService service;
-                if (!Modifier.isStatic(method.getModifiers())) {
-                    try {
-                        service = (WebService)serviceType.newInstance();
-                    } catch (IllegalAccessException | InstantiationException exception) {
-                        throw new RuntimeException(exception);
-                    }
+        @Override
+        public void onError(AsyncEvent event) {
+            // No-op
+        }
 
-                    service.setLocale(request.getLocale());
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // No-op
+        }
+    }
 
-                    Principal userPrincipal = request.getUserPrincipal();
+    // Result of a call within a batch request
+    private static class BatchResult {
+        public final LinkedHashMap<String, Object> values = new LinkedHashMap<>();
 
-                    if (userPrincipal != null) {
-                        service.setUserName(userPrincipal.getName());
-                        service.setUserRoles(new UserRoleSet(request));
-                    }
-                } else {
-                    service = null;
-                }
+        public Handler handler = null;
+        public RequestContext requestContext = null;
 
-                try {
-                    result = method.invoke(service, getArguments(method, parameterMap, fileMap));
-                } catch (IllegalAccessException | InvocationTargetException exception) {
-                    throw new RuntimeException(exception);
-                }
-            } catch (RuntimeException exception) {
-                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-                return;
-            }
+        public BatchResult() {
+        }
 
-            // Write response
-            Class<?> returnType = method.getReturnType();
+        public BatchResult(int status) {
+            values.put(STATUS_KEY, status);
+        }
 
-            if (returnType == Void.TYPE || returnType == Void.class) {
-                response.setStatus(HttpServletResponse.SC_NO_CONTENT);
-            } else {
-                response.setContentType("application/json; charset=UTF-8");
+        public void release() {
+            if (handler != null) {
+                handler.release(requestContext);
 
-                writeValue(response.getWriter(), result, 0);
+                handler = null;
             }
-        } finally {
-            // Delete files
-            for (LinkedList<File> fileList : fileMap.values()) {
-                for (File file : fileList) {
-                    file.delete();
-                }
+        }
+
+        public void discard() {
+            try {
+                RequestTiming.close(values.get(RESULT_KEY));
+            } catch (IOException exception) {
+                // No-op
+            } finally {
+                release();
             }
         }
     }
 
-    private static Method getMethod(LinkedList<Method> handlerList, HashMap<String, LinkedList<String>> parameterMap,
-        HashMap<String, LinkedList<File>> fileMap) {
-        Method method = null;
+    // Call within a batch request
+    private class BatchCall implements Callable<BatchResult> {
+        private RequestContext batchContext;
+        private Object call;
 
-        int n = -1;
+        private AtomicBoolean claimed = new AtomicBoolean(false);
 
-        for (Method handler : handlerList) {
-            Parameter[] parameters = handler.getParameters();
-
-            int count = 0;
-
-            for (int i = 0; i < parameters.length; i++) {
-                String name = parameters[i].getName();
+        public BatchCall(RequestContext batchContext, Object call) {
+            this.batchContext = batchContext;
+            this.call = call;
+        }
 
-                if (parameterMap.containsKey(name) || fileMap.containsKey(name)) {
-                    count++;
-                }
+        @Override
+        public BatchResult call() {
+            if (claimed.get()) {
+                return null;
             }
 
-            if (count > n) {
-                n = count;
+            BatchResult result = executeBatchCall(batchContext, call);
+
+            // Dispose of the result if the writer has stopped waiting for it
+            if (!claimed.compareAndSet(false, true)) {
+                result.discard();
 
-                method = handler;
+                return null;
             }
+
+            return result;
         }
 
-        return method;
+        public boolean abandon() {
+            return claimed.compareAndSet(false, true);
+        }
     }
 
-    private static Object[] getArguments(Method method, HashMap<String, LinkedList<String>> parameterMap,
-        HashMap<String, LinkedList<File>> fileMap) throws IOException {
-        Parameter[] parameters = method.getParameters();
+    private RouteIndex routeIndex = null;
 
-        Object[] arguments = new Object[parameters.length];
+    private ExecutorService executorService = null;
+    private Semaphore handlerPermits = null;
 
-        for (int i = 0; i < parameters.length; i++) {
-            Parameter parameter = parameters[i];
+    private AtomicBoolean asyncUnsupportedReported = new AtomicBoolean(false);
 
-            String name = parameter.getName();
-            Class<?> type = parameter.getType();
+    private ConcurrentHashMap<String, CompletableFuture<BufferedResponse>> coalescedRequests = new ConcurrentHashMap<>();
 
-            Object argument;
-            if (type == List.class) {
-                ParameterizedType parameterizedType = (ParameterizedType)parameter.getParameterizedType();
-                Type elementType = parameterizedType.getActualTypeArguments()[0];
+    private JSONEncoder defaultResponseEncoder = null;
+    private ResponseEncoders responseEncoders = null;
 
-                List<Object> list;
-                if (elementType == URL.class) {
-                    LinkedList<File> fileList = fileMap.get(name);
+    private boolean etags = false;
 
-                    if (fileList != null) {
-                        list = new ArrayList<>(fileList.size());
+    private int compressionThreshold = -1;
+    private DeflaterPool gzipDeflaterPool = null;
+    private DeflaterPool deflateDeflaterPool = null;
 
-                        for (File file : fileList) {
-                            list.add(file.toURI().toURL());
-                        }
-                    } else {
-                        list = Collections.emptyList();
-                    }
-                } else {
-                    LinkedList<String> valueList = parameterMap.get(name);
+    private String batchPath = null;
+    private ExecutorService batchExecutorService = null;
+    private int maxBatchSize = 0;
+    private HashSet<String> batchOperations = null;
+    private HashSet<String> batchRoles = null;
 
-                    if (valueList != null) {
-                        int n = valueList.size();
+    private boolean metrics = false;
+    private String metricsPath = null;
+    private ArrayList<HandlerMetrics> handlerMetrics = null;
+    private ArrayList<ObjectName> metricsNames = null;
 
-                        list = new ArrayList<>(n);
+    private boolean serverTiming = false;
+    private Method setTrailerFields = null;
 
-                        for (String value : valueList) {
-                            list.add(getArgument(value, elementType));
-                        }
-                    } else {
-                        list = Collections.emptyList();
-                    }
-                }
+    private ScheduledExecutorService deadlineExecutorService = null;
 
-                argument = list;
-            } else {
-                if (type == URL.class) {
-                    LinkedList<File> fileList = fileMap.get(name);
+    private long asyncTimeout = 0;
 
-                    if (fileList != null) {
-                        argument = fileList.getFirst().toURI().toURL();
-                    } else {
-                        argument = null;
-                    }
-                } else {
-                    LinkedList<String> valueList = parameterMap.get(name);
+    private static final String CONTAINER_EXECUTION_MODE = "container";
+    private static final String VIRTUAL_EXECUTION_MODE = "virtual";
 
-                    String value;
-                    if (valueList != null) {
-                        value = valueList.getFirst();
-                    } else {
-                        value = null;
-                    }
+    private static final int DEFAULT_MAX_BATCH_SIZE = 100;
 
-                    argument = getArgument(value, type);
-                }
-            }
-
-            arguments[i] = argument;
-        }
-
-        return arguments;
-    }
-
-    private static Object getArgument(String value, Type type) {
-        Object argument;
-        if (type == String.class) {
-            argument = value;
-        } else if (type == Byte.TYPE) {
-            argument = (value == null) ? 0 : Byte.parseByte(value);
-        } else if (type == Byte.class) {
-            argument = (value == null) ? null : Byte.parseByte(value);
-        } else if (type == Short.TYPE) {
-            argument = (value == null) ? 0 : Short.parseShort(value);
-        } else if (type == Short.class) {
-            argument = (value == null) ? null : Short.parseShort(value);
-        } else if (type == Integer.TYPE) {
-            argument = (value == null) ? 0 : Integer.parseInt(value);
-        } else if (type == Integer.class) {
-            argument = (value == null) ? null : Integer.parseInt(value);
-        } else if (type == Long.TYPE) {
-            argument = (value == null) ? 0 : Long.parseLong(value);
-        } else if (type == Long.class) {
-            argument = (value == null) ? null : Long.parseLong(value);
-        } else if (type == Float.TYPE) {
-            argument = (value == null) ? 0 : Float.parseFloat(value);
-        } else if (type == Float.class) {
-            argument = (value == null) ? null : Float.parseFloat(value);
-        } else if (type == Double.TYPE) {
-            argument = (value == null) ? 0 : Double.parseDouble(value);
-        } else if (type == Double.class) {
-            argument = (value == null) ? null : Double.parseDouble(value);
-        } else if (type == Boolean.TYPE) {
-            argument = (value == null) ? false : Boolean.parseBoolean(value);
-        } else if (type == Boolean.class) {
-            argument = (value == null) ? null : Boolean.parseBoolean(value);
-        } else {
-            throw new UnsupportedOperationException("Invalid parameter type.");
-        }
+    private static final int DEFAULT_ASYNC_TIMEOUT = 30000;
 
-        return argument;
-    }
+    private static final int DEFAULT_COMPRESSION_LEVEL = 6;
 
-    private static void writeValue(PrintWriter writer, Object value, int depth) throws IOException {
-        if (writer.checkError()) {
-            throw new IOException("Error writing to output stream.");
-        }
+    private static final String METHOD_KEY = "method";
+    private static final String PATH_KEY = "path";
+    private static final String ARGUMENTS_KEY = "arguments";
+    private static final String STATUS_KEY = "status";
+    private static final String RESULT_KEY = "result";
 
-        if (value == null) {
-            writer.append(null);
-        } else if (value instanceof CharSequence) {
-            CharSequence string = (CharSequence)value;
-
-            writer.append("\"");
-
-            for (int i = 0, n = string.length(); i < n; i++) {
-                char c = string.charAt(i);
-
-                if (c == '"' || c == '\\') {
-                    writer.append("\\" + c);
-                } else if (c == '\b') {
-                    writer.append("\\b");
-                } else if (c == '\f') {
-                    writer.append("\\f");
-                } else if (c == '\n') {
-                    writer.append("\\n");
-                } else if (c == '\r') {
-                    writer.append("\\r");
-                } else if (c == '\t') {
-                    writer.append("\\t");
-                } else {
-                    writer.append(c);
-                }
+    private static final String DEADLINE_ATTRIBUTE = RequestDispatcherServlet.class.getName() + ".deadline";
+    private static final String ABORT_ATTRIBUTE = RequestDispatcherServlet.class.getName() + ".abort";
+
+    @Override
+    public void init() throws ServletException {
+        // Load service classes
+        LinkedHashMap<String, Class<?>> serviceTypes = new LinkedHashMap<>();
+
+        try {
+            String serviceClassName = getServletConfig().getInitParameter("serviceClassName");
+
+            if (serviceClassName != null) {
+                RouteIndex.putServiceType(serviceTypes, "", Class.forName(serviceClassName));
             }
 
-            writer.append("\"");
-        } else if (value instanceof Number || value instanceof Boolean) {
-            writer.append(String.valueOf(value));
-        } else if (value instanceof List<?>) {
-            List<?> list = (List<?>)value;
+            String services = getServletConfig().getInitParameter("services");
 
-            try {
-                writer.append("[");
+            if (services != null) {
+                String[] entries = services.trim().split("[\\s,]+");
 
-                depth++;
+                for (int i = 0; i < entries.length; i++) {
+                    String entry = entries[i];
 
-                int i = 0;
+                    if (entry.length() == 0) {
+                        continue;
+                    }
 
-                for (Object element : list) {
-                    if (i > 0) {
-                        writer.append(",");
+                    int j = entry.indexOf('=');
+
+                    if (j == -1) {
+                        throw new ServletException("Invalid service entry.");
                     }
 
-                    writer.append("\n");
+                    RouteIndex.putServiceType(serviceTypes, entry.substring(0, j), Class.forName(entry.substring(j + 1)));
+                }
+            }
 
-                    indent(writer, depth);
+            // Populate resource tree; all services share a single index
+            routeIndex = new RouteIndex(serviceTypes);
+        } catch (ClassNotFoundException exception) {
+            throw new ServletException(exception);
+        } catch (RuntimeException exception) {
+            throw new ServletException(exception.getMessage(), exception);
+        }
 
-                    writeValue(writer, element, depth);
+        // Configure execution mode
+        String executionMode = getServletConfig().getInitParameter("executionMode");
 
-                    i++;
-                }
+        if (executionMode == null || executionMode.equals(CONTAINER_EXECUTION_MODE)) {
+            executorService = null;
+        } else if (executionMode.equals(VIRTUAL_EXECUTION_MODE)) {
+            try {
+                executorService = (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException exception) {
+                throw new ServletException("Virtual threads are not supported.", exception);
+            }
+        } else {
+            throw new ServletException("Invalid execution mode.");
+        }
 
-                depth--;
+        int maxConcurrentHandlers = getIntegerInitParameter("maxConcurrentHandlers", 0);
 
-                writer.append("\n");
+        asyncTimeout = getIntegerInitParameter("asyncTimeout", DEFAULT_ASYNC_TIMEOUT);
 
-                indent(writer, depth);
+        if (maxConcurrentHandlers > 0) {
+            handlerPermits = new Semaphore(maxConcurrentHandlers);
+        }
 
-                writer.append("]");
-            } finally {
-                if (list instanceof AutoCloseable) {
-                    try {
-                        ((AutoCloseable)list).close();
-                    } catch (Exception exception) {
-                        throw new IOException(exception);
-                    }
-                }
-            }
-        } else if (value instanceof Map<?, ?>) {
-            Map<?, ?> map = (Map<?, ?>)value;
+        // Load response encoders
+        String flushInterval = getServletConfig().getInitParameter("flushInterval");
 
+        int elementsPerFlush;
+        if (flushInterval != null) {
             try {
-                writer.append("{");
+                elementsPerFlush = Integer.parseInt(flushInterval);
+            } catch (NumberFormatException exception) {
+                throw new ServletException(exception);
+            }
 
-                depth++;
+            if (elementsPerFlush < 0) {
+                throw new ServletException("Invalid flush interval.");
+            }
+        } else {
+            elementsPerFlush = 0;
+        }
 
-                int i = 0;
+        defaultResponseEncoder = new JSONEncoder(elementsPerFlush);
 
-                for (Map.Entry<?, ?> entry : map.entrySet()) {
-                    if (i > 0) {
-                        writer.append(",");
-                    }
+        responseEncoders = new ResponseEncoders(defaultResponseEncoder, new CBOREncoder(elementsPerFlush), routeIndex.getClassLoaders());
 
-                    writer.append("\n");
+        // Configure entity tag generation
+        etags = Boolean.parseBoolean(getServletConfig().getInitParameter("etags"));
 
-                    Object key = entry.getKey();
+        // Configure response compression
+        String compressionThreshold = getServletConfig().getInitParameter("compressionThreshold");
 
-                    if (!(key instanceof String)) {
-                        throw new IOException("Invalid key type.");
-                    }
+        if (compressionThreshold != null) {
+            try {
+                this.compressionThreshold = Integer.parseInt(compressionThreshold);
+            } catch (NumberFormatException exception) {
+                throw new ServletException(exception);
+            }
 
-                    indent(writer, depth);
+            if (this.compressionThreshold < 0) {
+                throw new ServletException("Invalid compression threshold.");
+            }
 
-                    writer.append("\"" + key + "\": ");
+            String compressionLevelValue = getServletConfig().getInitParameter("compressionLevel");
 
-                    writeValue(writer, entry.getValue(), depth);
+            int compressionLevel;
+            if (compressionLevelValue != null) {
+                try {
+                    compressionLevel = Integer.parseInt(compressionLevelValue);
+                } catch (NumberFormatException exception) {
+                    throw new ServletException(exception);
+                }
 
-                    i++;
+                if (compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+                    throw new ServletException("Invalid compression level.");
                 }
+            } else {
+                compressionLevel = DEFAULT_COMPRESSION_LEVEL;
+            }
 
-                depth--;
+            int deflaterPoolSize = Runtime.getRuntime().availableProcessors() * 2;
 
-                writer.append("\n");
+            gzipDeflaterPool = new DeflaterPool(compressionLevel, true, deflaterPoolSize);
+            deflateDeflaterPool = new DeflaterPool(compressionLevel, false, deflaterPoolSize);
+        }
 
-                indent(writer, depth);
+        // Configure batch execution
+        batchPath = getServletConfig().getInitParameter("batchPath");
 
-                writer.append("}");
-            } finally {
-                if (map instanceof AutoCloseable) {
-                    try {
-                        ((AutoCloseable)map).close();
-                    } catch (Exception exception) {
-                        throw new IOException(exception);
-                    }
+        if (batchPath != null) {
+            if (!batchPath.startsWith("/")) {
+                batchPath = "/" + batchPath;
+            }
+
+            int maxBatchConcurrency = getIntegerInitParameter("maxBatchConcurrency", Runtime.getRuntime().availableProcessors());
+
+            batchExecutorService = Executors.newFixedThreadPool(maxBatchConcurrency, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, getServletName() + "-batch");
+
+                    thread.setDaemon(true);
+
+                    return thread;
                 }
+            });
+
+            maxBatchSize = getIntegerInitParameter("maxBatchSize", DEFAULT_MAX_BATCH_SIZE);
+
+            // Calls bypass the container's URL constraints, so they are limited to the listed paths
+            batchOperations = new HashSet<>();
+
+            for (String operation : getListInitParameter("batchOperations")) {
+                batchOperations.add(trimLeadingSlashes(operation));
             }
-        } else {
-            throw new IOException("Invalid value type.");
+
+            batchRoles = new HashSet<>(getListInitParameter("batchRoles"));
         }
-    }
 
-    private static void indent(Writer writer, int depth) throws IOException {
-        for (int i = 0; i < depth; i++) {
-            writer.append("  ");
+        // Configure metrics collection
+        metricsPath = getServletConfig().getInitParameter("metricsPath");
+
+        if (metricsPath != null && !metricsPath.startsWith("/")) {
+            metricsPath = "/" + metricsPath;
         }
+
+        metrics = Boolean.parseBoolean(getServletConfig().getInitParameter("metrics")) || metricsPath != null;
+
+        if (metrics) {
+            handlerMetrics = new ArrayList<>();
+            metricsNames = new ArrayList<>();
+        }
+
+        // Configure phase timing
+        serverTiming = Boolean.parseBoolean(getServletConfig().getInitParameter("serverTiming"));
+
+        if (serverTiming) {
+            // Trailers require Servlet 4.0
+            try {
+                setTrailerFields = HttpServletResponse.class.getMethod("setTrailerFields", Supplier.class);
+            } catch (NoSuchMethodException exception) {
+                setTrailerFields = null;
+            }
+        }
+
+        // Create deadline scheduler
+        deadlineExecutorService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, getServletName() + "-deadline");
+
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+
+        // Publish handler metrics
+        if (metrics) {
+            for (Handler handler : routeIndex.getHandlers()) {
+                registerMetrics(handler);
+            }
+        }
+    }
+
+    private void registerMetrics(Handler handler) throws ServletException {
+        handler.metrics = new HandlerMetrics(handler.verb.name(), handler.path, handler.signature, handler.concurrencyLimiter);
+
+        handlerMetrics.add(handler.metrics);
+
+        // Publish the metrics to the platform MBean server
+        Hashtable<String, String> properties = new Hashtable<>();
+
+        properties.put("type", "RPC");
+        properties.put("servlet", ObjectName.quote(getServletName()));
+        properties.put("verb", handler.verb.name());
+        properties.put("path", ObjectName.quote(handler.path));
+        properties.put("handler", ObjectName.quote(handler.signature));
+
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+
+        try {
+            ObjectName name = new ObjectName("org.httprpc", properties);
+
+            // Replace the metrics of a previous instance of the servlet
+            if (mbeanServer.isRegistered(name)) {
+                mbeanServer.unregisterMBean(name);
+            }
+
+            mbeanServer.registerMBean(new StandardMBean(handler.metrics, HandlerMetricsMBean.class), name);
+
+            metricsNames.add(name);
+        } catch (JMException exception) {
+            throw new ServletException(exception);
+        }
+    }
+
+    private int getIntegerInitParameter(String name, int defaultValue) throws ServletException {
+        String value = getServletConfig().getInitParameter(name);
+
+        if (value == null) {
+            return defaultValue;
+        }
+
+        int result;
+        try {
+            result = Integer.parseInt(value);
+        } catch (NumberFormatException exception) {
+            throw new ServletException(exception);
+        }
+
+        if (result <= 0) {
+            throw new ServletException("Invalid value for " + name + ".");
+        }
+
+        return result;
+    }
+
+    private List<String> getListInitParameter(String name) {
+        String value = getServletConfig().getInitParameter(name);
+
+        ArrayList<String> result = new ArrayList<>();
+
+        if (value != null) {
+            String[] entries = value.trim().split("[\\s,]+");
+
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i].length() > 0) {
+                    result.add(entries[i]);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public void destroy() {
+        if (executorService != null) {
+            executorService.shutdown();
+        }
+
+        if (batchExecutorService != null) {
+            batchExecutorService.shutdownNow();
+        }
+
+        if (deadlineExecutorService != null) {
+            deadlineExecutorService.shutdownNow();
+        }
+
+        if (metricsNames != null) {
+            MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+
+            for (ObjectName name : metricsNames) {
+                try {
+                    mbeanServer.unregisterMBean(name);
+                } catch (JMException exception) {
+                    // No-op
+                }
+            }
+        }
+
+        super.destroy();
+    }
+
+    @Override
+    protected void service(final HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        // Let the container abort the connection of an asynchronous request whose response was abandoned
+        IOException abortException = (IOException)request.getAttribute(ABORT_ATTRIBUTE);
+
+        if (abortException != null) {
+            throw abortException;
+        }
+
+        final long startTime = System.nanoTime();
+
+        // Establish the time after which the caller will no longer be waiting
+        Long deadline = AdmissionControl.getDeadline(request.getHeader(AdmissionControl.REQUEST_TIMEOUT_HEADER), startTime);
+
+        if (deadline != null) {
+            request.setAttribute(DEADLINE_ATTRIBUTE, deadline);
+        }
+
+        String pathInfo = request.getPathInfo();
+
+        // Execute batch requests
+        if (batchPath != null && batchPath.equals(pathInfo)) {
+            if (Verb.of(request.getMethod()) == Verb.POST) {
+                serviceBatch(request, response);
+            } else {
+                response.setStatus(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            }
+
+            return;
+        }
+
+        // Report metrics
+        if (metricsPath != null && metricsPath.equals(pathInfo)) {
+            if (Verb.of(request.getMethod()) == Verb.GET) {
+                serviceMetrics(request, response);
+            } else {
+                response.setStatus(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            }
+
+            return;
+        }
+
+        // Look up resource
+        HashMap<String, String> pathVariables = new HashMap<>();
+
+        Resource resource = routeIndex.getResource(pathInfo, pathVariables);
+
+        if (resource == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        Verb verb = Verb.of(request.getMethod());
+
+        HandlerSet handlerSet = (verb == null) ? null : resource.handlerSets[verb.ordinal()];
+
+        if (handlerSet == null) {
+            response.setStatus(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            return;
+        }
+
+        // Set character encoding
+        if (request.getCharacterEncoding() == null) {
+            request.setCharacterEncoding("UTF-8");
+        }
+
+        // Bind arguments
+        final RequestArguments arguments;
+        try {
+            arguments = new ServletRequestArguments(request, pathVariables.isEmpty() ? null : pathVariables);
+        } catch (IllegalArgumentException exception) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        // Invoke handler method
+        final Handler handler = handlerSet.resolve(arguments);
+
+        final RequestTiming requestTiming;
+        if (serverTiming || handler.metrics != null || handler.concurrencyLimiter != null) {
+            requestTiming = new RequestTiming(startTime);
+
+            requestTiming.end(RequestTiming.Phase.ROUTE);
+        } else {
+            requestTiming = null;
+        }
+
+        // Shed load when the handler's concurrency limit has been reached
+        if (handler.concurrencyLimiter != null) {
+            if (!AdmissionControl.acquire(handler)) {
+                if (handler.metrics != null) {
+                    handler.metrics.callRejected();
+                }
+
+                response.setStatus(AdmissionControl.SERVICE_UNAVAILABLE);
+                response.setIntHeader(AdmissionControl.RETRY_AFTER_HEADER, handler.concurrencyLimit.retryAfter());
+
+                return;
+            }
+
+            requestTiming.end(RequestTiming.Phase.QUEUE);
+        }
+
+        if (handler.metrics != null) {
+            handler.metrics.callStarted();
+
+            response = new MeteredResponse(response);
+        }
+
+        if (executorService != null && !request.isAsyncSupported() && asyncUnsupportedReported.compareAndSet(false, true)) {
+            log("Asynchronous processing is not supported by the servlet or one of its filters; "
+                + "handlers will execute on container threads.");
+        }
+
+        if (executorService != null && request.isAsyncSupported()) {
+            // Release the container thread and execute the handler on the executor
+            final AsyncRequest asyncRequest = new AsyncRequest(request, response, handler, arguments, requestTiming);
+
+            executorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    HttpServletResponse response = (HttpServletResponse)asyncRequest.asyncContext.getResponse();
+
+                    RequestTiming.set(requestTiming);
+
+                    boolean failed = true;
+
+                    DeadlineExceededException deadlineExceededException = null;
+
+                    try {
+                        if (handlerPermits != null) {
+                            handlerPermits.acquire();
+                        }
+
+                        if (requestTiming != null) {
+                            requestTiming.end(RequestTiming.Phase.QUEUE);
+                        }
+
+                        try {
+                            dispatch(request, response, handler, arguments, requestTiming, true);
+
+                            failed = false;
+                        } finally {
+                            if (handlerPermits != null) {
+                                handlerPermits.release();
+                            }
+                        }
+                    } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+
+                        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                    } catch (DeadlineExceededException exception) {
+                        deadlineExceededException = exception;
+                    } catch (IOException exception) {
+                        // No-op; the client is no longer listening
+                    } finally {
+                        RequestTiming.set(null);
+
+                        if (deadlineExceededException != null) {
+                            asyncRequest.abort(deadlineExceededException);
+                        } else {
+                            asyncRequest.complete(failed);
+                        }
+                    }
+                }
+            });
+
+            return;
+        }
+
+        boolean asynchronous = false;
+        boolean failed = true;
+
+        RequestTiming.set(requestTiming);
+
+        try {
+            asynchronous = dispatch(request, response, handler, arguments, requestTiming, false);
+
+            failed = false;
+        } finally {
+            RequestTiming.set(null);
+
+            // A request that failed with an exception may not have set an error status
+            if (!asynchronous) {
+                complete(request, response, handler, arguments, requestTiming, failed);
+            }
+        }
+    }
+
+    private void complete(HttpServletRequest request, HttpServletResponse response, Handler handler, RequestArguments arguments,
+        RequestTiming requestTiming, boolean failed) {
+        arguments.deleteFiles();
+
+        if (requestTiming == null) {
+            return;
+        }
+
+        // Report the final timings of responses whose headers have not yet been sent
+        if (serverTiming && !response.isCommitted() && !response.containsHeader("Trailer")) {
+            response.setHeader("Server-Timing", requestTiming.toString());
+        }
+
+        long latency = System.nanoTime() - requestTiming.startTime;
+
+        boolean error = failed || response.getStatus() >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+
+        if (handler.metrics != null) {
+            handler.metrics.callCompleted(latency, error, ((MeteredResponse)response).getByteCount(), requestTiming);
+        }
+
+        AdmissionControl.release(handler, requestTiming, response.getStatus(), failed, (Long)request.getAttribute(DEADLINE_ATTRIBUTE));
+    }
+
+    private void serviceBatch(final HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (request.getCharacterEncoding() == null) {
+            request.setCharacterEncoding("UTF-8");
+        }
+
+        // Decode calls
+        String contentType = request.getContentType();
+
+        Object body = null;
+
+        if (contentType != null && contentType.startsWith("application/json")) {
+            try {
+                body = new JSONDecoder().readValue(request.getReader());
+            } catch (IOException exception) {
+                body = null;
+            }
+        }
+
+        if (!(body instanceof List<?>) || ((List<?>)body).size() > maxBatchSize) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        List<?> calls = (List<?>)body;
+
+        // Capture the caller's identity, since the request must not be accessed by batch threads
+        RequestContext batchContext = getBatchContext(request);
+
+        // Execute calls concurrently
+        ArrayList<BatchCall> batchCalls = new ArrayList<>(calls.size());
+        ArrayList<Future<BatchResult>> futures = new ArrayList<>(calls.size());
+
+        for (Object call : calls) {
+            BatchCall batchCall = new BatchCall(batchContext, call);
+
+            batchCalls.add(batchCall);
+            futures.add(batchExecutorService.submit(batchCall));
+        }
+
+        // Write results in call order as they become available
+        response.setContentType(defaultResponseEncoder.getContentType());
+
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(getOutputStream(request, response), StandardCharsets.UTF_8));
+
+        int i = 0;
+
+        try {
+            writer.append("[");
+
+            for (int n = futures.size(); i < n; i++) {
+                // Stop waiting for results once the caller has disconnected
+                if (writer.checkError()) {
+                    break;
+                }
+
+                BatchResult result;
+                try {
+                    result = futures.get(i).get();
+                } catch (ExecutionException exception) {
+                    result = new BatchResult(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+
+                    result = new BatchResult(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                }
+
+                if (i > 0) {
+                    writer.append(",");
+                }
+
+                writer.append("\n");
+
+                JSONEncoder.indent(writer, 1);
+
+                try {
+                    defaultResponseEncoder.writeValue(writer, result.values, 1);
+                } finally {
+                    result.release();
+                }
+
+                writer.flush();
+            }
+
+            writer.append("\n]");
+        } finally {
+            writer.close();
+
+            // Discard the results of any calls that were not written
+            for (int n = futures.size(); i < n; i++) {
+                Future<BatchResult> future = futures.get(i);
+
+                if (batchCalls.get(i).abandon()) {
+                    // The call will dispose of its own result
+                    future.cancel(true);
+                } else {
+                    try {
+                        BatchResult result = future.get();
+
+                        if (result != null) {
+                            result.discard();
+                        }
+                    } catch (Exception exception) {
+                        // No-op
+                    }
+                }
+            }
+        }
+    }
+
+    private BatchResult executeBatchCall(RequestContext batchContext, Object call) {
+        if (!(call instanceof Map<?, ?>)) {
+            return new BatchResult(HttpServletResponse.SC_BAD_REQUEST);
+        }
+
+        Map<?, ?> map = (Map<?, ?>)call;
+
+        Object method = map.get(METHOD_KEY);
+        Object path = map.get(PATH_KEY);
+        Object arguments = map.get(ARGUMENTS_KEY);
+
+        if (!(method instanceof String) || !(path instanceof String)
+            || (arguments != null && !(arguments instanceof Map<?, ?>))) {
+            return new BatchResult(HttpServletResponse.SC_BAD_REQUEST);
+        }
+
+        HashMap<String, String> pathVariables = new HashMap<>();
+
+        Resource resource = routeIndex.getResource((String)path, pathVariables);
+
+        if (resource == null) {
+            return new BatchResult(HttpServletResponse.SC_NOT_FOUND);
+        }
+
+        Verb verb = Verb.of((String)method);
+
+        HandlerSet handlerSet = (verb == null) ? null : resource.handlerSets[verb.ordinal()];
+
+        if (handlerSet == null) {
+            return new BatchResult(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+        }
+
+        Map<?, ?> body = (arguments == null) ? Collections.emptyMap() : (Map<?, ?>)arguments;
+
+        RequestArguments requestArguments = new RequestArguments(body, pathVariables.isEmpty() ? null : pathVariables);
+
+        Handler handler = handlerSet.resolve(requestArguments);
+
+        // Root-mounted paths retain any leading slash declared by the method
+        if (!batchOperations.contains(trimLeadingSlashes(handler.path))) {
+            return new BatchResult(HttpServletResponse.SC_FORBIDDEN);
+        }
+
+        if (AdmissionControl.hasExpired(batchContext.deadline)) {
+            return new BatchResult(AdmissionControl.GATEWAY_TIMEOUT);
+        }
+
+        long startTime = System.nanoTime();
+
+        if (!AdmissionControl.acquire(handler)) {
+            if (handler.metrics != null) {
+                handler.metrics.callRejected();
+            }
+
+            return new BatchResult(AdmissionControl.SERVICE_UNAVAILABLE);
+        }
+
+        if (handler.metrics != null) {
+            handler.metrics.callStarted();
+        }
+
+        BatchResult result = new BatchResult();
+
+        RequestContext requestContext = new RequestContext(batchContext.locale, batchContext.userName,
+            batchContext.userRoles, batchContext.deadline);
+
+        RequestTiming requestTiming = (handler.concurrencyLimiter == null) ? null : new RequestTiming(startTime);
+
+        RequestTiming.set(requestTiming);
+
+        Object value;
+        try {
+            value = handler.execute(requestContext, requestArguments);
+
+            // Retain the service instance until the result has been written
+            result.handler = handler;
+            result.requestContext = requestContext;
+
+            if (value instanceof CompletionStage<?>) {
+                value = ((CompletionStage<?>)value).toCompletableFuture().get();
+
+                if (requestTiming != null) {
+                    requestTiming.end(RequestTiming.Phase.INVOKE);
+                }
+            }
+        } catch (ArgumentBinder.InvalidStructureException exception) {
+            result.values.put(STATUS_KEY, HttpServletResponse.SC_BAD_REQUEST);
+            return result;
+        } catch (IOException | RuntimeException | ExecutionException exception) {
+            result.values.put(STATUS_KEY, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return result;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+
+            result.values.put(STATUS_KEY, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return result;
+        } finally {
+            RequestContext.set(null);
+            RequestTiming.set(null);
+
+            // The status will only have been set if the call failed
+            long latency = System.nanoTime() - startTime;
+
+            Integer status = (Integer)result.values.get(STATUS_KEY);
+
+            if (handler.metrics != null) {
+                handler.metrics.callCompleted(latency, status != null, 0, null);
+            }
+
+            // The result is serialized with the rest of the batch, so only its invocation is sampled
+            if (requestTiming != null) {
+                AdmissionControl.release(handler, requestTiming, (status == null) ? HttpServletResponse.SC_OK : status, false,
+                    batchContext.deadline);
+            }
+        }
+
+        if (handler.returnsValue) {
+            result.values.put(STATUS_KEY, HttpServletResponse.SC_OK);
+            result.values.put(RESULT_KEY, value);
+        } else {
+            result.values.put(STATUS_KEY, HttpServletResponse.SC_NO_CONTENT);
+        }
+
+        return result;
+    }
+
+    private void serviceMetrics(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ArrayList<Map<String, Object>> results = new ArrayList<>(handlerMetrics.size());
+
+        for (HandlerMetrics metrics : handlerMetrics) {
+            results.add(metrics.toMap());
+        }
+
+        ResponseEncoder responseEncoder = getResponseEncoder(request, response);
+
+        response.setContentType(responseEncoder.getContentType());
+
+        OutputStream outputStream = getOutputStream(request, response);
+
+        try {
+            responseEncoder.writeValue(results, outputStream);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    private static RequestContext getRequestContext(HttpServletRequest request) {
+        Principal userPrincipal = request.getUserPrincipal();
+
+        Long deadline = (Long)request.getAttribute(DEADLINE_ATTRIBUTE);
+
+        if (userPrincipal != null) {
+            return new RequestContext(request.getLocale(), userPrincipal.getName(), new UserRoleSet(request), deadline);
+        } else {
+            return new RequestContext(request.getLocale(), null, null, deadline);
+        }
+    }
+
+    private RequestContext getBatchContext(HttpServletRequest request) {
+        Principal userPrincipal = request.getUserPrincipal();
+
+        Long deadline = (Long)request.getAttribute(DEADLINE_ATTRIBUTE);
+
+        if (userPrincipal != null) {
+            // Only the configured roles can be resolved without the request
+            HashSet<String> userRoles = new HashSet<>();
+
+            for (String role : batchRoles) {
+                if (request.isUserInRole(role)) {
+                    userRoles.add(role);
+                }
+            }
+
+            return new RequestContext(request.getLocale(), userPrincipal.getName(), Collections.unmodifiableSet(userRoles), deadline);
+        } else {
+            return new RequestContext(request.getLocale(), null, null, deadline);
+        }
+    }
+
+    private static boolean hasExpired(HttpServletRequest request) {
+        return AdmissionControl.hasExpired((Long)request.getAttribute(DEADLINE_ATTRIBUTE));
+    }
+
+    private boolean dispatch(final HttpServletRequest request, HttpServletResponse response, final Handler handler,
+        final RequestArguments arguments, final RequestTiming requestTiming, boolean blocking) throws IOException {
+        // Skip work whose result the caller will not receive
+        if (hasExpired(request)) {
+            response.setStatus(AdmissionControl.GATEWAY_TIMEOUT);
+            return false;
+        }
+
+        if (handler.coalesce || handler.responseCache != null) {
+            dispatchBuffered(request, response, handler, arguments);
+
+            return false;
+        }
+
+        final RequestContext requestContext = getRequestContext(request);
+
+        Object result;
+        try {
+            result = handler.execute(requestContext, arguments);
+        } catch (ArgumentBinder.InvalidStructureException exception) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return false;
+        } catch (RuntimeException exception) {
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return false;
+        }
+
+        // Keep the service instance until its result has been written
+        boolean asynchronous = false;
+
+        try {
+            if (result instanceof CompletionStage<?>) {
+                CompletionStage<?> completionStage = (CompletionStage<?>)result;
+
+                if (!blocking && request.isAsyncSupported()) {
+                    // Release the container thread and write the response on completion
+                    final AsyncRequest asyncRequest = new AsyncRequest(request, response, handler, arguments, requestTiming);
+
+                    RequestContext.set(null);
+
+                    asynchronous = true;
+
+                    completionStage.whenComplete(new BiConsumer<Object, Throwable>() {
+                        @Override
+                        public void accept(Object value, Throwable throwable) {
+                            // Discard results that arrive after the request has timed out
+                            if (asyncRequest.isCompleted()) {
+                                try {
+                                    RequestTiming.close(value);
+                                } catch (IOException exception) {
+                                    // No-op
+                                } finally {
+                                    handler.release(requestContext);
+                                }
+
+                                return;
+                            }
+
+                            RequestContext.set(requestContext);
+                            RequestTiming.set(requestTiming);
+
+                            if (requestTiming != null) {
+                                requestTiming.end(RequestTiming.Phase.INVOKE);
+                            }
+
+                            boolean failed = true;
+
+                            DeadlineExceededException deadlineExceededException = null;
+
+                            try {
+                                HttpServletResponse response = (HttpServletResponse)asyncRequest.asyncContext.getResponse();
+
+                                if (throwable == null) {
+                                    writeResult(request, response, handler, value, requestContext.resultVersion);
+                                } else {
+                                    response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                                }
+
+                                failed = false;
+                            } catch (DeadlineExceededException exception) {
+                                deadlineExceededException = exception;
+                            } catch (IOException exception) {
+                                // No-op; the client is no longer listening
+                            } finally {
+                                RequestTiming.set(null);
+
+                                handler.release(requestContext);
+
+                                if (deadlineExceededException != null) {
+                                    asyncRequest.abort(deadlineExceededException);
+                                } else {
+                                    asyncRequest.complete(failed);
+                                }
+                            }
+                        }
+                    });
+
+                    return true;
+                }
+
+                try {
+                    result = completionStage.toCompletableFuture().get();
+                } catch (ExecutionException exception) {
+                    response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                    return false;
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+
+                    response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                    return false;
+                }
+
+                if (requestTiming != null) {
+                    requestTiming.end(RequestTiming.Phase.INVOKE);
+                }
+            }
+
+            // Write response
+            writeResult(request, response, handler, result, requestContext.resultVersion);
+
+            return false;
+        } finally {
+            if (!asynchronous) {
+                handler.release(requestContext);
+            }
+        }
+    }
+
+    private void dispatchBuffered(HttpServletRequest request, HttpServletResponse response, Handler handler,
+        RequestArguments arguments) throws IOException {
+        ResponseCache responseCache = handler.responseCache;
+
+        ResponseEncoder responseEncoder = getResponseEncoder(request, response);
+
+        String key = getRequestKey(request, responseEncoder, responseCache == null || responseCache.perUser);
+
+        BufferedResponse bufferedResponse = (responseCache == null) ? null : responseCache.get(key);
+
+        if (bufferedResponse == null) {
+            try {
+                if (handler.coalesce) {
+                    bufferedResponse = executeCoalesced(request, handler, arguments, responseEncoder, key);
+                } else {
+                    bufferedResponse = execute(request, handler, arguments, responseEncoder, key);
+                }
+            } catch (Exception exception) {
+                if (exception instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+
+                // Coalesced waiters receive the executing request's failure as the cause
+                Throwable cause = (exception instanceof ExecutionException) ? exception.getCause() : exception;
+
+                if (cause instanceof ArgumentBinder.InvalidStructureException) {
+                    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                } else if (cause instanceof TimeoutException) {
+                    response.setStatus(AdmissionControl.getTimeoutStatus((Long)request.getAttribute(DEADLINE_ATTRIBUTE)));
+                } else {
+                    response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                }
+
+                return;
+            }
+
+            // Attribute time spent waiting on a coalesced execution to the invocation
+            RequestTiming requestTiming = RequestTiming.get();
+
+            if (requestTiming != null) {
+                requestTiming.end(RequestTiming.Phase.INVOKE);
+            }
+        }
+
+        writeContent(request, response, bufferedResponse.content, bufferedResponse.etag, responseEncoder);
+    }
+
+    private BufferedResponse executeCoalesced(HttpServletRequest request, Handler handler, RequestArguments arguments,
+        ResponseEncoder responseEncoder, String key) throws Exception {
+        CompletableFuture<BufferedResponse> future = new CompletableFuture<>();
+        CompletableFuture<BufferedResponse> inFlight = coalescedRequests.putIfAbsent(key, future);
+
+        if (inFlight == null) {
+            // Execute the handler on behalf of all identical requests
+            try {
+                future.complete(execute(request, handler, arguments, responseEncoder, key));
+            } catch (Exception exception) {
+                future.completeExceptionally(exception);
+            } finally {
+                coalescedRequests.remove(key, future);
+            }
+
+            return future.get();
+        }
+
+        // Do not wait for the in-flight execution beyond the caller's deadline
+        long timeout = TimeUnit.MILLISECONDS.toNanos(asyncTimeout);
+
+        Long deadline = (Long)request.getAttribute(DEADLINE_ATTRIBUTE);
+
+        if (deadline != null) {
+            timeout = Math.min(deadline - System.nanoTime(), timeout);
+        }
+
+        return inFlight.get(Math.max(timeout, 0), TimeUnit.NANOSECONDS);
+    }
+
+    private BufferedResponse execute(HttpServletRequest request, Handler handler, RequestArguments arguments,
+        ResponseEncoder responseEncoder, String key) throws Exception {
+        RequestContext requestContext = getRequestContext(request);
+
+        Object result = handler.execute(requestContext, arguments);
+
+        byte[] content;
+        try {
+            if (result instanceof CompletionStage<?>) {
+                result = ((CompletionStage<?>)result).toCompletableFuture().get();
+            }
+
+            content = handler.returnsValue ? encode(handler, responseEncoder, result) : null;
+        } finally {
+            handler.release(requestContext);
+        }
+
+        RequestTiming requestTiming = RequestTiming.get();
+
+        if (requestTiming != null) {
+            requestTiming.end(RequestTiming.Phase.SERIALIZE);
+        }
+
+        // Hash the content once on behalf of every request that shares it
+        BufferedResponse bufferedResponse = new BufferedResponse(content, (etags && content != null) ? getETag(content) : null);
+
+        // Cache the content before the execution is released to any waiting requests
+        if (handler.responseCache != null) {
+            handler.responseCache.put(key, bufferedResponse);
+        }
+
+        return bufferedResponse;
+    }
+
+    private static String getRequestKey(HttpServletRequest request, ResponseEncoder responseEncoder, boolean includeUser) {
+        StringBuilder keyBuilder = new StringBuilder();
+
+        String pathInfo = request.getPathInfo();
+
+        if (pathInfo != null) {
+            keyBuilder.append(pathInfo);
+        }
+
+        // Order parameters by name so that equivalent queries produce the same key
+        TreeMap<String, String[]> parameterMap = new TreeMap<>(request.getParameterMap());
+
+        for (Map.Entry<String, String[]> entry : parameterMap.entrySet()) {
+            keyBuilder.append('\0');
+            keyBuilder.append(entry.getKey());
+
+            String[] values = entry.getValue();
+
+            for (int i = 0; i < values.length; i++) {
+                keyBuilder.append('\1');
+                keyBuilder.append(values[i]);
+            }
+        }
+
+        keyBuilder.append('\0');
+        keyBuilder.append(request.getLocale().toLanguageTag());
+
+        keyBuilder.append('\0');
+        keyBuilder.append(responseEncoder.getContentType());
+
+        Principal userPrincipal = includeUser ? request.getUserPrincipal() : null;
+
+        if (userPrincipal != null) {
+            keyBuilder.append('\0');
+            keyBuilder.append(userPrincipal.getName());
+        }
+
+        return keyBuilder.toString();
+    }
+
+    private static byte[] encode(Handler handler, ResponseEncoder responseEncoder, Object result) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        Object event = FlightRecorderEvent.RPC_SERIALIZATION.begin();
+
+        try {
+            responseEncoder.writeValue(result, outputStream);
+        } finally {
+            if (event != null) {
+                FlightRecorderEvent.RPC_SERIALIZATION.commit(event, handler.path, handler.signature,
+                    responseEncoder.getContentType(), (long)outputStream.size());
+            }
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    private void writeContent(HttpServletRequest request, HttpServletResponse response, byte[] content, String etag,
+        ResponseEncoder responseEncoder) throws IOException {
+        if (content == null) {
+            response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+            return;
+        }
+
+        if (etags && Verb.of(request.getMethod()) == Verb.GET) {
+            if (etag == null) {
+                etag = getETag(content);
+            }
+
+            response.setHeader("ETag", etag);
+
+            if (matches(request.getHeader("If-None-Match"), etag)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
+
+        response.setContentType(responseEncoder.getContentType());
+
+        RequestTiming requestTiming = RequestTiming.get();
+
+        if (requestTiming != null) {
+            requestTiming.end(RequestTiming.Phase.SERIALIZE);
+        }
+
+        writeServerTiming(request, response, false);
+
+        String contentEncoding = getContentEncoding(request, response);
+
+        if (contentEncoding == null || content.length < compressionThreshold) {
+            response.setContentLength(content.length);
+
+            response.getOutputStream().write(content);
+        } else {
+            try (OutputStream outputStream = getCompressedOutputStream(response, contentEncoding)) {
+                outputStream.write(content);
+            }
+        }
+
+        if (requestTiming != null) {
+            requestTiming.end(RequestTiming.Phase.SERIALIZE);
+        }
+    }
+
+    private void writeResult(HttpServletRequest request, HttpServletResponse response, Handler handler, Object result,
+        String version) throws IOException {
+        if (!handler.returnsValue) {
+            response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+            return;
+        }
+
+        ResponseEncoder responseEncoder = getResponseEncoder(request, response);
+
+        if (etags && Verb.of(request.getMethod()) == Verb.GET) {
+            if (version == null) {
+                // Serialize the result in order to hash it
+                writeContent(request, response, encode(handler, responseEncoder, result), null, responseEncoder);
+                return;
+            }
+
+            // Distinguish the representations produced by different encoders
+            String etag;
+            if (responseEncoder == defaultResponseEncoder) {
+                etag = "\"" + version + "\"";
+            } else {
+                etag = "\"" + version + "+" + ResponseEncoders.getMediaType(responseEncoder.getContentType()) + "\"";
+            }
+
+            response.setHeader("ETag", etag);
+
+            if (matches(request.getHeader("If-None-Match"), etag)) {
+                // Discard the result without serializing it
+                RequestTiming.close(result);
+
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
+
+        response.setContentType(responseEncoder.getContentType());
+
+        writeServerTiming(request, response, true);
+
+        OutputStream outputStream = getOutputStream(request, response);
+
+        // Stop serializing once the caller's deadline has passed
+        Long deadline = (Long)request.getAttribute(DEADLINE_ATTRIBUTE);
+
+        ScheduledFuture<?> cancellation = null;
+
+        if (deadline != null) {
+            outputStream = new DeadlineOutputStream(outputStream, deadline);
+
+            if (result instanceof ResultSetAdapter) {
+                cancellation = scheduleCancellation((ResultSetAdapter)result, deadline);
+            }
+        }
+
+        Object event = FlightRecorderEvent.RPC_SERIALIZATION.begin();
+
+        CountingOutputStream countingOutputStream = null;
+
+        if (event != null) {
+            countingOutputStream = new CountingOutputStream(outputStream);
+
+            outputStream = countingOutputStream;
+        }
+
+        try {
+            try {
+                responseEncoder.writeValue(result, outputStream);
+            } finally {
+                if (cancellation != null) {
+                    cancellation.cancel(false);
+                }
+
+                outputStream.close();
+
+                if (event != null) {
+                    FlightRecorderEvent.RPC_SERIALIZATION.commit(event, handler.path, handler.signature,
+                        responseEncoder.getContentType(), countingOutputStream.byteCount);
+                }
+
+                RequestTiming requestTiming = RequestTiming.get();
+
+                if (requestTiming != null) {
+                    requestTiming.end(RequestTiming.Phase.SERIALIZE);
+                }
+            }
+        } catch (DeadlineExceededException exception) {
+            // Report the expiration if no part of the response has been sent
+            if (response.isCommitted()) {
+                throw exception;
+            }
+
+            response.reset();
+            response.setStatus(AdmissionControl.GATEWAY_TIMEOUT);
+        }
+    }
+
+    private ScheduledFuture<?> scheduleCancellation(final ResultSetAdapter resultSetAdapter, long deadline) {
+        // Interrupt a query that is blocked fetching rows when the deadline passes
+        return deadlineExecutorService.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    resultSetAdapter.cancel();
+                } catch (SQLException exception) {
+                    // No-op
+                }
+            }
+        }, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    private void writeServerTiming(HttpServletRequest request, HttpServletResponse response, boolean streamed) throws IOException {
+        final RequestTiming requestTiming = RequestTiming.get();
+
+        if (!serverTiming || requestTiming == null) {
+            return;
+        }
+
+        // Report the complete timings of a streamed response in a trailer if the caller accepts one
+        if (streamed && setTrailerFields != null) {
+            String te = request.getHeader("TE");
+
+            if (te != null && te.toLowerCase(Locale.ROOT).contains("trailers")) {
+                boolean trailer;
+                try {
+                    setTrailerFields.invoke(response, new Supplier<Map<String, String>>() {
+                        @Override
+                        public Map<String, String> get() {
+                            return Collections.singletonMap("Server-Timing", requestTiming.toString());
+                        }
+                    });
+
+                    trailer = true;
+                } catch (ReflectiveOperationException exception) {
+                    // The container rejects trailers when the protocol does not support them (e.g. HTTP/1.0)
+                    trailer = false;
+                }
+
+                if (trailer) {
+                    response.setHeader("Trailer", "Server-Timing");
+
+                    return;
+                }
+            }
+        }
+
+        response.setHeader("Server-Timing", requestTiming.toString());
+    }
+
+    private ResponseEncoder getResponseEncoder(HttpServletRequest request, HttpServletResponse response) {
+        response.setHeader("Vary", (compressionThreshold < 0) ? "Accept" : "Accept, Accept-Encoding");
+
+        return responseEncoders.get(request.getHeader("Accept"));
+    }
+
+    private OutputStream getOutputStream(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String contentEncoding = getContentEncoding(request, response);
+
+        if (contentEncoding == null) {
+            return response.getOutputStream();
+        }
+
+        return getCompressedOutputStream(response, contentEncoding);
+    }
+
+    private OutputStream getCompressedOutputStream(final HttpServletResponse response, final String contentEncoding) throws IOException {
+        DeflaterPool deflaterPool;
+        if (contentEncoding.equals(CompressedOutputStream.GZIP_ENCODING)) {
+            deflaterPool = gzipDeflaterPool;
+        } else {
+            deflaterPool = deflateDeflaterPool;
+        }
+
+        return new CompressedOutputStream(response.getOutputStream(), contentEncoding, compressionThreshold, deflaterPool) {
+            @Override
+            protected void compressionStarted() {
+                response.setHeader("Content-Encoding", contentEncoding);
+
+                // The encoded representation is no longer byte-for-byte identical
+                String etag = response.getHeader("ETag");
+
+                if (etag != null && !etag.startsWith("W/")) {
+                    response.setHeader("ETag", "W/" + etag);
+                }
+            }
+
+            @Override
+            protected void compressionSkipped(int length) {
+                response.setContentLength(length);
+            }
+        };
+    }
+
+    private String getContentEncoding(HttpServletRequest request, HttpServletResponse response) {
+        if (compressionThreshold < 0) {
+            return null;
+        }
+
+
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+
+        if (acceptEncoding == null) {
+            return null;
+        }
+
+        boolean gzip = false;
+        boolean deflate = false;
+
+        String[] codings = acceptEncoding.split(",");
+
+        for (int i = 0; i < codings.length; i++) {
+            String coding = codings[i];
+
+            int j = coding.indexOf(';');
+
+            String name = ((j == -1) ? coding : coding.substring(0, j)).trim();
+
+            // Ignore codings that the client has explicitly refused
+            if (j != -1) {
+                String parameter = coding.substring(j + 1).trim();
+
+                if (parameter.startsWith("q=")) {
+                    try {
+                        if (Double.parseDouble(parameter.substring(2)) <= 0) {
+                            continue;
+                        }
+                    } catch (NumberFormatException exception) {
+                        continue;
+                    }
+                }
+            }
+
+            if (name.equalsIgnoreCase(CompressedOutputStream.GZIP_ENCODING) || name.equals("*")) {
+                gzip = true;
+            } else if (name.equalsIgnoreCase(CompressedOutputStream.DEFLATE_ENCODING)) {
+                deflate = true;
+            }
+        }
+
+        if (gzip) {
+            return CompressedOutputStream.GZIP_ENCODING;
+        } else if (deflate) {
+            return CompressedOutputStream.DEFLATE_ENCODING;
+        } else {
+            return null;
+        }
+    }
+
+    private static String getETag(byte[] content) {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new RuntimeException(exception);
+        }
+
+        byte[] digest = messageDigest.digest(content);
+
+        StringBuilder etagBuilder = new StringBuilder(digest.length * 2 + 2);
+
+        etagBuilder.append('"');
+
+        for (int i = 0; i < digest.length; i++) {
+            etagBuilder.append(Character.forDigit((digest[i] >> 4) & 0x0f, 16));
+            etagBuilder.append(Character.forDigit(digest[i] & 0x0f, 16));
+        }
+
+        etagBuilder.append('"');
+
+        return etagBuilder.toString();
+    }
+
+    private static String trimLeadingSlashes(String path) {
+        int i = 0;
+
+        while (i < path.length() && path.charAt(i) == '/') {
+            i++;
+        }
+
+        return path.substring(i);
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        String[] tags = ifNoneMatch.split(",");
+
+        for (int i = 0; i < tags.length; i++) {
+            String tag = tags[i].trim();
+
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+
+        return false;
     }
 }
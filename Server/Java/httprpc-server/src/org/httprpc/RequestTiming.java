@@ -0,0 +1,129 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Records the time spent in each phase of the request being executed by the
+ * current thread. Phases are timed consecutively: ending a phase attributes
+ * the time elapsed since the previous phase ended.
+ */
+class RequestTiming {
+    public enum Phase {
+        ROUTE("route"),
+        QUEUE("queue"),
+        POPULATE("populate"),
+        SPOOL("spool"),
+        INVOKE("invoke"),
+        SERIALIZE("serialize"),
+        CLOSE("close");
+
+        public final String name;
+
+        private Phase(String name) {
+            this.name = name;
+        }
+
+        static final Phase[] VALUES = values();
+    }
+
+    public final long startTime;
+
+    private long mark;
+    private long[] durations = new long[Phase.VALUES.length];
+    private int endedPhases = 0;
+
+    private static final ThreadLocal<RequestTiming> current = new ThreadLocal<>();
+
+    public RequestTiming(long startTime) {
+        this.startTime = startTime;
+
+        mark = startTime;
+    }
+
+    public void end(Phase phase) {
+        long now = System.nanoTime();
+
+        durations[phase.ordinal()] += now - mark;
+        endedPhases |= 1 << phase.ordinal();
+
+        mark = now;
+    }
+
+    public long getDuration(Phase phase) {
+        return durations[phase.ordinal()];
+    }
+
+    public boolean hasEnded(Phase phase) {
+        return (endedPhases & (1 << phase.ordinal())) != 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder valueBuilder = new StringBuilder();
+
+        for (int i = 0; i < durations.length; i++) {
+            if (i > 0) {
+                valueBuilder.append(", ");
+            }
+
+            valueBuilder.append(Phase.VALUES[i].name);
+            valueBuilder.append(";dur=");
+            valueBuilder.append(String.format(Locale.ROOT, "%.3f", durations[i] / 1e6));
+        }
+
+        return valueBuilder.toString();
+    }
+
+    public static RequestTiming get() {
+        return current.get();
+    }
+
+    public static void set(RequestTiming requestTiming) {
+        if (requestTiming == null) {
+            current.remove();
+        } else {
+            current.set(requestTiming);
+        }
+    }
+
+    /**
+     * Closes a value if it is closeable, attributing the time spent to the
+     * close phase of the current request.
+     */
+    static void close(Object value) throws IOException {
+        if (!(value instanceof AutoCloseable)) {
+            return;
+        }
+
+        RequestTiming requestTiming = current.get();
+
+        if (requestTiming != null) {
+            requestTiming.end(Phase.SERIALIZE);
+        }
+
+        try {
+            ((AutoCloseable)value).close();
+        } catch (Exception exception) {
+            throw new IOException(exception);
+        } finally {
+            if (requestTiming != null) {
+                requestTiming.end(Phase.CLOSE);
+            }
+        }
+    }
+}
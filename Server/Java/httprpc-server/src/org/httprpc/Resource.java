@@ -0,0 +1,149 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Node in a resource tree.
+ */
+class Resource {
+    public final HandlerSet[] handlerSets = new HandlerSet[Verb.VALUES.length];
+
+    private String[] names = new String[0];
+    private int[] hashCodes = new int[0];
+    private Resource[] resources = new Resource[0];
+
+    private String variableName = null;
+    private Resource variable = null;
+
+    public Resource getResource(String component) {
+        int n = component.length();
+
+        if (n > 2 && component.charAt(0) == '{' && component.charAt(n - 1) == '}') {
+            String name = component.substring(1, n - 1).intern();
+
+            if (variable == null) {
+                variableName = name;
+                variable = new Resource();
+            } else if (variableName != name) {
+                throw new IllegalArgumentException("Conflicting path variable names.");
+            }
+
+            return variable;
+        }
+
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(component)) {
+                return resources[i];
+            }
+        }
+
+        Resource resource = new Resource();
+
+        int i = names.length;
+
+        names = Arrays.copyOf(names, i + 1);
+        hashCodes = Arrays.copyOf(hashCodes, i + 1);
+        resources = Arrays.copyOf(resources, i + 1);
+
+        names[i] = component;
+        hashCodes[i] = component.hashCode();
+        resources[i] = resource;
+
+        return resource;
+    }
+
+    public Resource getResource(String path, int start, int end) {
+        // Compute the hash code in place, using the same algorithm as String
+        int hashCode = 0;
+
+        for (int i = start; i < end; i++) {
+            hashCode = 31 * hashCode + path.charAt(i);
+        }
+
+        int n = end - start;
+
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i];
+
+            if (hashCodes[i] == hashCode && name.length() == n && path.regionMatches(start, name, 0, n)) {
+                return resources[i];
+            }
+        }
+
+        return null;
+    }
+
+    public Resource lookup(String path, HashMap<String, String> pathVariables) {
+        if (path == null) {
+            return this;
+        }
+
+        return lookup(path, 0, pathVariables);
+    }
+
+    private Resource lookup(String path, int i, HashMap<String, String> pathVariables) {
+        int n = path.length();
+
+        while (i < n && path.charAt(i) == '/') {
+            i++;
+        }
+
+        if (i == n) {
+            return isEmpty() ? null : this;
+        }
+
+        int j = path.indexOf('/', i);
+
+        if (j == -1) {
+            j = n;
+        }
+
+        // Prefer a literal match, falling back to the variable when the literal branch dead-ends
+        Resource child = getResource(path, i, j);
+
+        if (child != null) {
+            Resource resource = child.lookup(path, j, pathVariables);
+
+            if (resource != null) {
+                return resource;
+            }
+        }
+
+        if (variable != null) {
+            Resource resource = variable.lookup(path, j, pathVariables);
+
+            if (resource != null) {
+                pathVariables.put(variableName, path.substring(i, j));
+
+                return resource;
+            }
+        }
+
+        return null;
+    }
+
+    private boolean isEmpty() {
+        for (int i = 0; i < handlerSets.length; i++) {
+            if (handlerSets[i] != null) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialized response cache.
+ */
+class ResponseCache {
+    // Cache entry
+    private static class CacheEntry {
+        public final BufferedResponse response;
+        public final long expiration;
+
+        public CacheEntry(BufferedResponse response, long expiration) {
+            this.response = response;
+            this.expiration = expiration;
+        }
+    }
+
+    public final boolean perUser;
+
+    private long ttl;
+
+    private LinkedHashMap<String, CacheEntry> entries;
+
+    public ResponseCache(long ttl, final int maxEntries, boolean perUser) {
+        this.ttl = TimeUnit.SECONDS.toNanos(ttl);
+        this.perUser = perUser;
+
+        // Access order keeps the least recently used entry at the head, so eviction is constant time
+        entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 0;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public synchronized BufferedResponse get(String key) {
+        CacheEntry entry = entries.get(key);
+
+        if (entry == null) {
+            return null;
+        }
+
+        if (System.nanoTime() - entry.expiration > 0) {
+            entries.remove(key);
+
+            return null;
+        }
+
+        return entry.response;
+    }
+
+    public synchronized void put(String key, BufferedResponse response) {
+        entries.put(key, new CacheEntry(response, System.nanoTime() + ttl));
+    }
+}
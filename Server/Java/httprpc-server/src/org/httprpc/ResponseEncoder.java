@@ -0,0 +1,53 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Interface representing a response encoder. Encoders are selected by the
+ * dispatcher according to the request's <tt>Accept</tt> header. Additional
+ * encoders can be registered as service providers via a
+ * <i>META-INF/services/org.httprpc.ResponseEncoder</i> file.
+ */
+public interface ResponseEncoder {
+    /**
+     * Returns the MIME type of the encoded content.
+     *
+     * @return
+     * The content type, including any parameters; e.g.
+     * "application/cbor".
+     */
+    public String getContentType();
+
+    /**
+     * Writes a value to an output stream. The value may be <tt>null</tt> or an
+     * instance of any type supported as a service method return value.
+     * Values that implement {@link AutoCloseable} must be closed once they
+     * have been written.
+     *
+     * @param value
+     * The value to write.
+     *
+     * @param outputStream
+     * The output stream to which the value will be written. The stream
+     * should be flushed, but not closed.
+     *
+     * @throws IOException
+     * If an exception occurs while writing the value.
+     */
+    public void writeValue(Object value, OutputStream outputStream) throws IOException;
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+/**
+ * Selects response encoders based on the media types accepted by a caller.
+ */
+class ResponseEncoders {
+    private ResponseEncoder defaultEncoder;
+
+    private HashMap<String, ResponseEncoder> encoders = new HashMap<>();
+
+    public ResponseEncoders(ResponseEncoder defaultEncoder, ResponseEncoder cborEncoder, Set<ClassLoader> classLoaders) {
+        this.defaultEncoder = defaultEncoder;
+
+        add(defaultEncoder);
+        add(cborEncoder);
+
+        for (ClassLoader classLoader : classLoaders) {
+            for (ResponseEncoder responseEncoder : ServiceLoader.load(ResponseEncoder.class, classLoader)) {
+                add(responseEncoder);
+            }
+        }
+    }
+
+    private void add(ResponseEncoder responseEncoder) {
+        encoders.put(getMediaType(responseEncoder.getContentType()), responseEncoder);
+    }
+
+    public ResponseEncoder get(String accept) {
+        if (accept == null) {
+            return defaultEncoder;
+        }
+
+        // Select the supported type with the highest quality; earlier types win ties
+        ResponseEncoder responseEncoder = null;
+        double quality = 0;
+
+        String[] mediaRanges = accept.split(",");
+
+        for (int i = 0; i < mediaRanges.length; i++) {
+            String mediaRange = mediaRanges[i];
+
+            int j = mediaRange.indexOf(';');
+
+            double q = 1;
+
+            if (j != -1) {
+                String[] parameters = mediaRange.substring(j + 1).split(";");
+
+                for (int k = 0; k < parameters.length; k++) {
+                    String parameter = parameters[k].trim();
+
+                    if (parameter.startsWith("q=")) {
+                        try {
+                            q = Double.parseDouble(parameter.substring(2));
+                        } catch (NumberFormatException exception) {
+                            q = 0;
+                        }
+                    }
+                }
+            }
+
+            if (q > quality) {
+                ResponseEncoder encoder = encoders.get(getMediaType(mediaRange));
+
+                if (encoder != null) {
+                    responseEncoder = encoder;
+                    quality = q;
+                }
+            }
+        }
+
+        return (responseEncoder == null) ? defaultEncoder : responseEncoder;
+    }
+
+    static String getMediaType(String contentType) {
+        int i = contentType.indexOf(';');
+
+        return ((i == -1) ? contentType : contentType.substring(0, i)).trim().toLowerCase(Locale.ROOT);
+    }
+}
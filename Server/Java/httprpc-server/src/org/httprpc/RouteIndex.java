@@ -0,0 +1,169 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+/**
+ * Routing index for the methods of one or more services. Each service is
+ * mounted under a path prefix, and all services share a single resource tree.
+ */
+class RouteIndex {
+    private Resource root = new Resource();
+
+    private ArrayList<Handler> handlers = new ArrayList<>();
+    private LinkedHashSet<ClassLoader> classLoaders = new LinkedHashSet<>();
+
+    public RouteIndex(Map<String, Class<?>> serviceTypes) {
+        if (serviceTypes.isEmpty()) {
+            throw new IllegalArgumentException("No service types specified.");
+        }
+
+        for (Class<?> serviceType : serviceTypes.values()) {
+            classLoaders.add(serviceType.getClassLoader());
+        }
+
+        // Load argument converter providers
+        HashMap<ClassLoader, ArgumentConverters> argumentConverters = new HashMap<>();
+
+        for (ClassLoader classLoader : classLoaders) {
+            ArrayList<ArgumentConverterProvider> argumentConverterProviders = new ArrayList<>();
+
+            for (ArgumentConverterProvider argumentConverterProvider : ServiceLoader.load(ArgumentConverterProvider.class, classLoader)) {
+                argumentConverterProviders.add(argumentConverterProvider);
+            }
+
+            argumentConverters.put(classLoader, new ArgumentConverters(argumentConverterProviders));
+        }
+
+        // Populate resource tree
+        for (Map.Entry<String, Class<?>> entry : serviceTypes.entrySet()) {
+            String prefix = entry.getKey();
+            Class<?> serviceType = entry.getValue();
+
+            ServiceProvider serviceProvider = new ServiceProvider(serviceType);
+
+            ArgumentConverters serviceArgumentConverters = argumentConverters.get(serviceType.getClassLoader());
+
+            ServiceDispatcher serviceDispatcher = getServiceDispatcher(serviceType);
+
+            if (serviceDispatcher != null) {
+                // Use the route table and invokers generated at compile time
+                for (int i = 0, n = serviceDispatcher.getMethodCount(); i < n; i++) {
+                    addHandler(new Handler(serviceDispatcher, i, prefix, serviceProvider, serviceArgumentConverters));
+                }
+            } else {
+                Method[] methods = serviceType.getMethods();
+
+                for (int i = 0; i < methods.length; i++) {
+                    Method method = methods[i];
+
+                    if (method.getAnnotation(RPC.class) != null) {
+                        addHandler(new Handler(method, prefix, serviceProvider, serviceArgumentConverters));
+                    }
+                }
+            }
+        }
+    }
+
+    private static ServiceDispatcher getServiceDispatcher(Class<?> serviceType) {
+        // Dispatchers are named after the service's binary name
+        Class<?> dispatcherType;
+        try {
+            dispatcherType = Class.forName(serviceType.getName().replace('$', '_') + "_Dispatcher", true, serviceType.getClassLoader());
+        } catch (ClassNotFoundException exception) {
+            return null;
+        }
+
+        if (!ServiceDispatcher.class.isAssignableFrom(dispatcherType)) {
+            return null;
+        }
+
+        try {
+            return (ServiceDispatcher)dispatcherType.getConstructor().newInstance();
+        } catch (ReflectiveOperationException exception) {
+            throw new IllegalArgumentException(exception);
+        }
+    }
+
+    private void addHandler(Handler handler) {
+        Resource resource = root;
+
+        String[] components = handler.path.split("/");
+
+        for (int i = 0; i < components.length; i++) {
+            String component = components[i];
+
+            if (component.length() == 0) {
+                continue;
+            }
+
+            resource = resource.getResource(component);
+        }
+
+        HandlerSet handlerSet = resource.handlerSets[handler.verb.ordinal()];
+
+        if (handlerSet == null) {
+            handlerSet = new HandlerSet();
+
+            resource.handlerSets[handler.verb.ordinal()] = handlerSet;
+        } else if (handlerSet.getServiceProvider() != handler.serviceProvider) {
+            // Only methods of the same service can be overloaded
+            throw new IllegalArgumentException("Duplicate route: " + handler.verb + " " + handler.path + ".");
+        }
+
+        handlerSet.add(handler);
+
+        handlers.add(handler);
+    }
+
+    public Resource getResource(String path, HashMap<String, String> pathVariables) {
+        return root.lookup(path, pathVariables);
+    }
+
+    public List<Handler> getHandlers() {
+        return Collections.unmodifiableList(handlers);
+    }
+
+    public Set<ClassLoader> getClassLoaders() {
+        return Collections.unmodifiableSet(classLoaders);
+    }
+
+    static void putServiceType(Map<String, Class<?>> serviceTypes, String prefix, Class<?> serviceType) {
+        while (prefix.startsWith("/")) {
+            prefix = prefix.substring(1);
+        }
+
+        while (prefix.endsWith("/")) {
+            prefix = prefix.substring(0, prefix.length() - 1);
+        }
+
+        if (!WebService.class.isAssignableFrom(serviceType)) {
+            throw new IllegalArgumentException("Invalid service type.");
+        }
+
+        if (serviceTypes.put(prefix, serviceType) != null) {
+            throw new IllegalArgumentException("Duplicate service prefix.");
+        }
+    }
+}
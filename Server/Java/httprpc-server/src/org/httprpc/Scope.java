@@ -0,0 +1,66 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation that specifies the lifetime of a service instance.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Scope {
+    /**
+     * Service instance lifetimes.
+     */
+    public enum Type {
+        /**
+         * A single instance is shared by all requests.
+         */
+        SINGLETON,
+
+        /**
+         * Instances are drawn from a pool and returned to it when the request
+         * completes.
+         */
+        POOLED,
+
+        /**
+         * One instance is created for each thread that executes requests.
+         */
+        THREAD_LOCAL,
+
+        /**
+         * A new instance is created for each request.
+         */
+        PER_REQUEST
+    }
+
+    /**
+     * @return
+     * The lifetime of the service instance.
+     */
+    public Type value();
+
+    /**
+     * @return
+     * The maximum number of idle instances retained by a pooled service, or 0
+     * to use the number of available processors.
+     */
+    public int poolSize() default 0;
+}
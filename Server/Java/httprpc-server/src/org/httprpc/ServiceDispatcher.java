@@ -0,0 +1,105 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.lang.reflect.Method;
+
+/**
+ * Interface representing a service dispatcher. Dispatchers are generated at
+ * compile time by {@link org.httprpc.processor.RPCProcessor} and provide the
+ * route table and direct (non-reflective) invokers for a service's RPC
+ * methods.
+ * <p>
+ * Dispatcher instances are stateless and may be shared by concurrent
+ * requests.
+ */
+public interface ServiceDispatcher {
+    /**
+     * Returns the number of RPC methods provided by the service.
+     *
+     * @return
+     * The method count.
+     */
+    public int getMethodCount();
+
+    /**
+     * Returns an RPC method.
+     *
+     * @param index
+     * The method index.
+     *
+     * @return
+     * The method.
+     *
+     * @throws NoSuchMethodException
+     * If the method no longer exists in the service type.
+     */
+    public Method getMethod(int index) throws NoSuchMethodException;
+
+    /**
+     * Returns the HTTP verb associated with an RPC method.
+     *
+     * @param index
+     * The method index.
+     *
+     * @return
+     * The HTTP verb.
+     */
+    public String getVerb(int index);
+
+    /**
+     * Returns the path associated with an RPC method.
+     *
+     * @param index
+     * The method index.
+     *
+     * @return
+     * The resource path.
+     */
+    public String getPath(int index);
+
+    /**
+     * Returns the parameter names of an RPC method, as declared in the
+     * source code.
+     *
+     * @param index
+     * The method index.
+     *
+     * @return
+     * The parameter names.
+     */
+    public String[] getParameterNames(int index);
+
+    /**
+     * Invokes an RPC method.
+     *
+     * @param index
+     * The method index.
+     *
+     * @param service
+     * The service instance, or <tt>null</tt> for static methods.
+     *
+     * @param arguments
+     * The method arguments.
+     *
+     * @return
+     * The method result, or <tt>null</tt> if the method does not return a
+     * value.
+     *
+     * @throws Throwable
+     * If an error occurs while invoking the method.
+     */
+    public Object invoke(int index, WebService service, Object[] arguments) throws Throwable;
+}
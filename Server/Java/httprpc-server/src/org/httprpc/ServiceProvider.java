@@ -0,0 +1,132 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Provides service instances according to a service type's scope.
+ */
+class ServiceProvider {
+    private MethodHandle constructor;
+    private Scope.Type scope;
+
+    private WebService singleton = null;
+    private ArrayBlockingQueue<WebService> pool = null;
+    private ThreadLocal<WebService> threadLocal = null;
+
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(WebService.class);
+
+    public ServiceProvider(Class<?> serviceType) {
+        try {
+            constructor = MethodHandles.publicLookup().findConstructor(serviceType,
+                MethodType.methodType(Void.TYPE)).asType(CONSTRUCTOR_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException exception) {
+            throw new IllegalArgumentException(exception);
+        }
+
+        Scope annotation = serviceType.getAnnotation(Scope.class);
+
+        scope = (annotation == null) ? Scope.Type.PER_REQUEST : annotation.value();
+
+        switch (scope) {
+            case SINGLETON: {
+                singleton = newInstance();
+
+                break;
+            }
+
+            case POOLED: {
+                int poolSize = annotation.poolSize();
+
+                if (poolSize == 0) {
+                    poolSize = Runtime.getRuntime().availableProcessors();
+                }
+
+                pool = new ArrayBlockingQueue<>(poolSize);
+
+                break;
+            }
+
+            case THREAD_LOCAL: {
+                threadLocal = new ThreadLocal<>();
+
+                break;
+            }
+
+            default: {
+                break;
+            }
+        }
+    }
+
+    public WebService acquire() {
+        WebService service;
+        switch (scope) {
+            case SINGLETON: {
+                service = singleton;
+
+                break;
+            }
+
+            case POOLED: {
+                service = pool.poll();
+
+                if (service == null) {
+                    service = newInstance();
+                }
+
+                break;
+            }
+
+            case THREAD_LOCAL: {
+                service = threadLocal.get();
+
+                if (service == null) {
+                    service = newInstance();
+
+                    threadLocal.set(service);
+                }
+
+                break;
+            }
+
+            default: {
+                service = newInstance();
+
+                break;
+            }
+        }
+
+        return service;
+    }
+
+    public void release(WebService service) {
+        if (scope == Scope.Type.POOLED) {
+            pool.offer(service);
+        }
+    }
+
+    private WebService newInstance() {
+        try {
+            return (WebService)constructor.invokeExact();
+        } catch (Throwable throwable) {
+            throw new RuntimeException(throwable);
+        }
+    }
+}
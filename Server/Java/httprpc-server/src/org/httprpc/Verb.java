@@ -0,0 +1,43 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+/**
+ * HTTP verbs.
+ */
+enum Verb {
+    GET,
+    HEAD,
+    POST,
+    PUT,
+    DELETE,
+    OPTIONS,
+    TRACE,
+    PATCH;
+
+    static final Verb[] VALUES = values();
+
+    public static Verb of(String method) {
+        for (int i = 0; i < VALUES.length; i++) {
+            Verb verb = VALUES[i];
+
+            if (verb.name().equalsIgnoreCase(method)) {
+                return verb;
+            }
+        }
+
+        return null;
+    }
+}
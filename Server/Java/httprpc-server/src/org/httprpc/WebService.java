@@ -22,9 +22,15 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Abstract base class for HTTP-RPC web services.
+ * <p>
+ * Request metadata is provided by the dispatcher for the thread that is
+ * executing the current request, so a single service instance may safely be
+ * shared by concurrent requests (see {@link Scope}). The protected setters
+ * supply values for use outside of a request, such as in unit tests.
  */
 public abstract class WebService {
     private Locale locale = null;
@@ -39,11 +45,14 @@ public abstract class WebService {
      * The locale associated with the current request.
      */
     public Locale getLocale() {
-        return locale;
+        RequestContext requestContext = RequestContext.get();
+
+        return (requestContext == null) ? locale : requestContext.locale;
     }
 
     /**
-     * Sets the locale associated with the current request.
+     * Sets the locale that will be reported when the service is not executing
+     * a request.
      *
      * @param locale
      * The locale associated with the current request.
@@ -60,11 +69,14 @@ public abstract class WebService {
      * the user has not been authenticated.
      */
     public String getUserName() {
-        return userName;
+        RequestContext requestContext = RequestContext.get();
+
+        return (requestContext == null) ? userName : requestContext.userName;
     }
 
     /**
-     * Sets the user name associated with the current request.
+     * Sets the user name that will be reported when the service is not
+     * executing a request.
      *
      * @param userName
      * The user name associated with the current request, or <tt>null</tt> if
@@ -81,11 +93,14 @@ public abstract class WebService {
      * A set representing the roles the user belongs to.
      */
     public Set<String> getUserRoles() {
-        return userRoles;
+        RequestContext requestContext = RequestContext.get();
+
+        return (requestContext == null) ? userRoles : requestContext.userRoles;
     }
 
     /**
-     * Sets the user's roles.
+     * Sets the user roles that will be reported when the service is not
+     * executing a request.
      *
      * @param roles
      * A set representing the roles the user belongs to, or <tt>null</tt> if
@@ -95,6 +110,61 @@ public abstract class WebService {
         this.userRoles = roles;
     }
 
+    /**
+     * Returns the time remaining before the caller stops waiting for the
+     * current request, as specified by the request's <tt>Request-Timeout</tt>
+     * header. Long-running methods can consult this value to abandon work
+     * whose result would not be received.
+     *
+     * @return
+     * The number of milliseconds remaining, <tt>0</tt> if the deadline has
+     * passed, or {@link Long#MAX_VALUE} if the request does not have a
+     * deadline.
+     */
+    public long getRemainingTime() {
+        RequestContext requestContext = RequestContext.get();
+
+        if (requestContext == null || requestContext.deadline == null) {
+            return Long.MAX_VALUE;
+        }
+
+        return Math.max(TimeUnit.NANOSECONDS.toMillis(requestContext.deadline - System.nanoTime()), 0);
+    }
+
+    /**
+     * Associates a version token with the result of the current request. When
+     * entity tags are enabled, the token is returned to the caller as the
+     * response's ETag, and a request whose <tt>If-None-Match</tt> header
+     * contains the token is answered with 304 (Not Modified) without
+     * serializing the result.
+     *
+     * @param version
+     * A token that changes whenever the result changes; e.g. a row version or
+     * modification timestamp. The token may only contain characters that are
+     * permitted in an entity tag (RFC 7232), which excludes whitespace, control
+     * characters, and double quotes.
+     */
+    protected void setResultVersion(String version) {
+        RequestContext requestContext = RequestContext.get();
+
+        if (requestContext == null) {
+            throw new IllegalStateException("No current request.");
+        }
+
+        if (version != null) {
+            for (int i = 0, n = version.length(); i < n; i++) {
+                char c = version.charAt(i);
+
+                // etagc = %x21 / %x23-7E / obs-text
+                if (c < 0x21 || c == '"' || c == 0x7f || c > 0xff) {
+                    throw new IllegalArgumentException("Invalid version.");
+                }
+            }
+        }
+
+        requestContext.resultVersion = version;
+    }
+
     /**
      * Creates a list from a variable length array of elements.
      *
@@ -16,15 +16,22 @@ package org.httprpc.beans;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.AbstractList;
 import java.util.AbstractMap;
 import java.util.AbstractSet;
 import java.util.Date;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Class that exposes the properties of a Java Bean object as a map.
@@ -136,6 +143,9 @@ public class BeanAdapter extends AbstractMap<String, Object> {
 
     private static final String GET_PREFIX = "get";
     private static final String IS_PREFIX = "is";
+    private static final String SET_PREFIX = "set";
+
+    private static final ConcurrentHashMap<Class<?>, Map<String, Method>> setterCache = new ConcurrentHashMap<>();
 
     /**
      * Constructs a new Bean adapter.
@@ -254,4 +264,230 @@ public class BeanAdapter extends AbstractMap<String, Object> {
 
         return (T)value;
     }
+
+    /**
+     * Adapts a value for use as an instance of a given type. The value is
+     * typically the result of decoding a JSON document and must be
+     * <tt>null</tt> or an instance of {@link String}, {@link Number},
+     * {@link Boolean}, {@link List}, or {@link Map}.
+     * <p>
+     * Scalar values are converted to the requested primitive, wrapper,
+     * {@link String}, or enum type. Lists and maps are adapted element by
+     * element according to the type's arguments. If the type is any other
+     * class, the value must be a map, and it is used to populate a new
+     * instance of the class via the class's public setters.
+     *
+     * @param <T> The target type.
+     *
+     * @param value
+     * The value to adapt.
+     *
+     * @param type
+     * The target type.
+     *
+     * @return
+     * The adapted value.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T adapt(Object value, Type type) {
+        if (type == null) {
+            throw new IllegalArgumentException();
+        }
+
+        Object result;
+        if (type instanceof Class<?>) {
+            result = adaptValue(value, (Class<?>)type);
+        } else if (type instanceof ParameterizedType) {
+            ParameterizedType parameterizedType = (ParameterizedType)type;
+
+            Type rawType = parameterizedType.getRawType();
+            Type[] typeArguments = parameterizedType.getActualTypeArguments();
+
+            if (rawType == List.class) {
+                result = adaptList(value, typeArguments[0]);
+            } else if (rawType == Map.class) {
+                result = adaptMap(value, typeArguments[1]);
+            } else {
+                throw new IllegalArgumentException("Unsupported type.");
+            }
+        } else {
+            result = value;
+        }
+
+        return (T)result;
+    }
+
+    private static Object adaptValue(Object value, Class<?> type) {
+        if (type.isPrimitive()) {
+            if (type == Boolean.TYPE) {
+                return (value == null) ? Boolean.FALSE : adaptValue(value, Boolean.class);
+            } else {
+                return adaptNumber((value == null) ? 0 : value, type);
+            }
+        }
+
+        if (value == null || type == Object.class) {
+            return value;
+        }
+
+        Object result;
+        if (type == String.class) {
+            result = value.toString();
+        } else if (type == Boolean.class) {
+            result = (value instanceof Boolean) ? value : Boolean.valueOf(value.toString());
+        } else if (Number.class.isAssignableFrom(type)) {
+            result = adaptNumber(value, type);
+        } else if (type.isEnum()) {
+            result = adaptEnum(value, type);
+        } else if (type == List.class) {
+            result = adaptList(value, Object.class);
+        } else if (type == Map.class) {
+            result = adaptMap(value, Object.class);
+        } else if (type.isInstance(value)) {
+            result = value;
+        } else if (value instanceof Map<?, ?>) {
+            result = adaptBean((Map<?, ?>)value, type);
+        } else {
+            throw new IllegalArgumentException("Value cannot be adapted to " + type.getName() + ".");
+        }
+
+        return result;
+    }
+
+    private static Object adaptNumber(Object value, Class<?> type) {
+        Number number;
+        if (value instanceof Number) {
+            number = (Number)value;
+        } else {
+            number = new BigDecimal(value.toString());
+        }
+
+        Object result;
+        if (type == Byte.TYPE || type == Byte.class) {
+            result = number.byteValue();
+        } else if (type == Short.TYPE || type == Short.class) {
+            result = number.shortValue();
+        } else if (type == Integer.TYPE || type == Integer.class) {
+            result = number.intValue();
+        } else if (type == Long.TYPE || type == Long.class) {
+            result = number.longValue();
+        } else if (type == Float.TYPE || type == Float.class) {
+            result = number.floatValue();
+        } else if (type == Double.TYPE || type == Double.class) {
+            result = number.doubleValue();
+        } else if (type == BigDecimal.class) {
+            result = new BigDecimal(number.toString());
+        } else if (type == BigInteger.class) {
+            result = new BigInteger(number.toString());
+        } else if (type.isInstance(number)) {
+            result = number;
+        } else {
+            throw new IllegalArgumentException("Value cannot be adapted to " + type.getName() + ".");
+        }
+
+        return result;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object adaptEnum(Object value, Class<?> type) {
+        return Enum.valueOf((Class<Enum>)type, value.toString());
+    }
+
+    private static List<Object> adaptList(Object value, Type elementType) {
+        if (value == null) {
+            return null;
+        }
+
+        if (!(value instanceof List<?>)) {
+            throw new IllegalArgumentException("Value is not a list.");
+        }
+
+        List<?> list = (List<?>)value;
+
+        ArrayList<Object> result = new ArrayList<>(list.size());
+
+        for (Object element : list) {
+            result.add(adapt(element, elementType));
+        }
+
+        return result;
+    }
+
+    private static Map<String, Object> adaptMap(Object value, Type valueType) {
+        if (value == null) {
+            return null;
+        }
+
+        if (!(value instanceof Map<?, ?>)) {
+            throw new IllegalArgumentException("Value is not a map.");
+        }
+
+        LinkedHashMap<String, Object> result = new LinkedHashMap<>();
+
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>)value).entrySet()) {
+            result.put(String.valueOf(entry.getKey()), adapt(entry.getValue(), valueType));
+        }
+
+        return result;
+    }
+
+    private static Object adaptBean(Map<?, ?> map, Class<?> type) {
+        Object bean;
+        try {
+            bean = type.getConstructor().newInstance();
+        } catch (ReflectiveOperationException exception) {
+            throw new IllegalArgumentException(exception);
+        }
+
+        Map<String, Method> setters = getSetters(type);
+
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            Method setter = setters.get(entry.getKey());
+
+            if (setter != null) {
+                Object propertyValue = adapt(entry.getValue(), setter.getGenericParameterTypes()[0]);
+
+                try {
+                    setter.invoke(bean, propertyValue);
+                } catch (InvocationTargetException | IllegalAccessException exception) {
+                    throw new IllegalArgumentException(exception);
+                }
+            }
+        }
+
+        return bean;
+    }
+
+    private static Map<String, Method> getSetters(Class<?> type) {
+        Map<String, Method> setters = setterCache.get(type);
+
+        if (setters == null) {
+            setters = new HashMap<>();
+
+            Method[] methods = type.getMethods();
+
+            for (int i = 0; i < methods.length; i++) {
+                Method method = methods[i];
+
+                String methodName = method.getName();
+
+                int j = SET_PREFIX.length();
+                int n = methodName.length();
+
+                if (methodName.startsWith(SET_PREFIX) && j < n && method.getParameterCount() == 1) {
+                    char c = methodName.charAt(j++);
+
+                    if (j == n || Character.isLowerCase(methodName.charAt(j))) {
+                        c = Character.toLowerCase(c);
+                    }
+
+                    setters.put(c + methodName.substring(j), method);
+                }
+            }
+
+            setterCache.put(type, setters);
+        }
+
+        return setters;
+    }
 }
@@ -0,0 +1,310 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+import org.httprpc.RPC;
+
+/**
+ * Annotation processor that generates a {@link org.httprpc.ServiceDispatcher}
+ * for each web service that declares RPC methods.
+ * <p>
+ * The dispatcher for a service named <tt>com.example.MathService</tt> is
+ * generated as <tt>com.example.MathService_Dispatcher</tt>.
+ */
+@SupportedAnnotationTypes("org.httprpc.RPC")
+public class RPCProcessor extends AbstractProcessor {
+    private static final String WEB_SERVICE_CLASS_NAME = "org.httprpc.WebService";
+    private static final String DISPATCHER_SUFFIX = "_Dispatcher";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnvironment) {
+        // Identify the service types that declare RPC methods
+        LinkedHashSet<TypeElement> serviceTypes = new LinkedHashSet<>();
+
+        for (Element element : roundEnvironment.getElementsAnnotatedWith(RPC.class)) {
+            if (element.getKind() == ElementKind.METHOD) {
+                serviceTypes.add((TypeElement)element.getEnclosingElement());
+            }
+        }
+
+        for (TypeElement serviceType : serviceTypes) {
+            if (isDispatchable(serviceType)) {
+                try {
+                    writeDispatcher(serviceType);
+                } catch (IOException exception) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, exception.getMessage(), serviceType);
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private boolean isDispatchable(TypeElement serviceType) {
+        Types types = processingEnv.getTypeUtils();
+        Elements elements = processingEnv.getElementUtils();
+
+        TypeElement webServiceType = elements.getTypeElement(WEB_SERVICE_CLASS_NAME);
+
+        if (webServiceType == null || !types.isAssignable(types.erasure(serviceType.asType()), webServiceType.asType())) {
+            return false;
+        }
+
+        // The dispatcher must be able to reference the service type from its package
+        Element element = serviceType;
+
+        while (element.getKind().isClass() || element.getKind().isInterface()) {
+            if (!element.getModifiers().contains(Modifier.PUBLIC)) {
+                return false;
+            }
+
+            if (element.getEnclosingElement().getKind() != ElementKind.PACKAGE
+                && !element.getModifiers().contains(Modifier.STATIC)) {
+                return false;
+            }
+
+            element = element.getEnclosingElement();
+        }
+
+        return true;
+    }
+
+    private void writeDispatcher(TypeElement serviceType) throws IOException {
+        Types types = processingEnv.getTypeUtils();
+        Elements elements = processingEnv.getElementUtils();
+
+        // Collect declared and inherited RPC methods
+        List<ExecutableElement> methods = new ArrayList<>();
+
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(serviceType))) {
+            if (method.getAnnotation(RPC.class) != null && method.getModifiers().contains(Modifier.PUBLIC)) {
+                methods.add(method);
+            }
+        }
+
+        String packageName = elements.getPackageOf(serviceType).getQualifiedName().toString();
+        String binaryName = elements.getBinaryName(serviceType).toString();
+
+        String simpleName = (packageName.length() == 0) ? binaryName : binaryName.substring(packageName.length() + 1);
+        String dispatcherName = simpleName.replace('$', '_') + DISPATCHER_SUFFIX;
+
+        String serviceTypeName = serviceType.getQualifiedName().toString();
+
+        PrintWriter writer = new PrintWriter(processingEnv.getFiler().createSourceFile((packageName.length() == 0) ? dispatcherName
+            : packageName + "." + dispatcherName, serviceType).openWriter());
+
+        try {
+            writer.println("// Generated by " + RPCProcessor.class.getName() + "; do not edit.");
+            writer.println();
+
+            if (packageName.length() > 0) {
+                writer.println("package " + packageName + ";");
+                writer.println();
+            }
+
+            writer.println("public final class " + dispatcherName + " implements org.httprpc.ServiceDispatcher {");
+
+            // Route table
+            writer.println("    private static final String[] VERBS = {");
+
+            for (ExecutableElement method : methods) {
+                writer.println("        " + quote(method.getAnnotation(RPC.class).method()) + ",");
+            }
+
+            writer.println("    };");
+            writer.println();
+            writer.println("    private static final String[] PATHS = {");
+
+            for (ExecutableElement method : methods) {
+                writer.println("        " + quote(method.getAnnotation(RPC.class).path()) + ",");
+            }
+
+            writer.println("    };");
+            writer.println();
+            writer.println("    private static final String[][] PARAMETER_NAMES = {");
+
+            for (ExecutableElement method : methods) {
+                writer.print("        {");
+
+                List<? extends VariableElement> parameters = method.getParameters();
+
+                for (int i = 0, n = parameters.size(); i < n; i++) {
+                    if (i > 0) {
+                        writer.print(", ");
+                    }
+
+                    writer.print(quote(parameters.get(i).getSimpleName().toString()));
+                }
+
+                writer.println("},");
+            }
+
+            writer.println("    };");
+            writer.println();
+
+            writer.println("    @Override");
+            writer.println("    public int getMethodCount() {");
+            writer.println("        return " + methods.size() + ";");
+            writer.println("    }");
+            writer.println();
+
+            // Method lookup
+            writer.println("    @Override");
+            writer.println("    public java.lang.reflect.Method getMethod(int index) throws NoSuchMethodException {");
+            writer.println("        switch (index) {");
+
+            for (int i = 0, n = methods.size(); i < n; i++) {
+                ExecutableElement method = methods.get(i);
+
+                writer.print("            case " + i + ": return " + serviceTypeName + ".class.getMethod("
+                    + quote(method.getSimpleName().toString()));
+
+                for (VariableElement parameter : method.getParameters()) {
+                    writer.print(", " + types.erasure(parameter.asType()) + ".class");
+                }
+
+                writer.println(");");
+            }
+
+            writer.println("            default: throw new IndexOutOfBoundsException();");
+            writer.println("        }");
+            writer.println("    }");
+            writer.println();
+
+            writer.println("    @Override");
+            writer.println("    public String getVerb(int index) {");
+            writer.println("        return VERBS[index];");
+            writer.println("    }");
+            writer.println();
+
+            writer.println("    @Override");
+            writer.println("    public String getPath(int index) {");
+            writer.println("        return PATHS[index];");
+            writer.println("    }");
+            writer.println();
+
+            writer.println("    @Override");
+            writer.println("    public String[] getParameterNames(int index) {");
+            writer.println("        return PARAMETER_NAMES[index].clone();");
+            writer.println("    }");
+            writer.println();
+
+            // Direct invocation
+            writer.println("    @Override");
+            writer.println("    @SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+            writer.println("    public Object invoke(int index, org.httprpc.WebService service, Object[] arguments) throws Throwable {");
+            writer.println("        switch (index) {");
+
+            for (int i = 0, n = methods.size(); i < n; i++) {
+                ExecutableElement method = methods.get(i);
+
+                writer.println("            case " + i + ": {");
+
+                StringBuilder invocationBuilder = new StringBuilder();
+
+                if (method.getModifiers().contains(Modifier.STATIC)) {
+                    invocationBuilder.append(serviceTypeName);
+                } else {
+                    invocationBuilder.append("((" + serviceTypeName + ")service)");
+                }
+
+                invocationBuilder.append('.');
+                invocationBuilder.append(method.getSimpleName());
+                invocationBuilder.append('(');
+
+                List<? extends VariableElement> parameters = method.getParameters();
+
+                for (int j = 0, m = parameters.size(); j < m; j++) {
+                    if (j > 0) {
+                        invocationBuilder.append(", ");
+                    }
+
+                    invocationBuilder.append("(" + types.erasure(parameters.get(j).asType()) + ")arguments[" + j + "]");
+                }
+
+                invocationBuilder.append(')');
+
+                if (method.getReturnType().getKind() == TypeKind.VOID) {
+                    writer.println("                " + invocationBuilder + ";");
+                    writer.println("                return null;");
+                } else {
+                    writer.println("                return " + invocationBuilder + ";");
+                }
+
+                writer.println("            }");
+            }
+
+            writer.println("            default: throw new IndexOutOfBoundsException();");
+            writer.println("        }");
+            writer.println("    }");
+
+            writer.println("}");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoteBuilder = new StringBuilder();
+
+        quoteBuilder.append('"');
+
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+
+            if (c == '"' || c == '\\') {
+                quoteBuilder.append('\\');
+                quoteBuilder.append(c);
+            } else if (c < 0x20) {
+                // Unicode escapes would be translated before the literal is parsed
+                quoteBuilder.append(String.format("\\%03o", (int)c));
+            } else {
+                quoteBuilder.append(c);
+            }
+        }
+
+        quoteBuilder.append('"');
+
+        return quoteBuilder.toString();
+    }
+}
@@ -44,6 +44,9 @@ import java.util.NoSuchElementException;
 public class ResultSetAdapter extends AbstractList<Map<String, Object>> implements AutoCloseable {
     private ResultSet resultSet;
 
+    private Object event = null;
+    private long rowCount = 0;
+
     /**
      * Creates a new result set adapter.
      *
@@ -60,6 +63,12 @@ public class ResultSetAdapter extends AbstractList<Map<String, Object>> implemen
 
     @Override
     public void close() throws SQLException {
+        if (event != null) {
+            ResultSetIterationEvent.commit(event, rowCount);
+
+            event = null;
+        }
+
         Statement statement = resultSet.getStatement();
 
         try {
@@ -77,6 +86,23 @@ public class ResultSetAdapter extends AbstractList<Map<String, Object>> implemen
         }
     }
 
+    /**
+     * Cancels the statement that produced the result set, if supported by the
+     * driver. This method may be called from a thread other than the one that
+     * is iterating the results, in which case that thread's next attempt to
+     * read a row fails.
+     *
+     * @throws SQLException
+     * If an error occurs while cancelling the statement.
+     */
+    public void cancel() throws SQLException {
+        Statement statement = resultSet.getStatement();
+
+        if (statement != null) {
+            statement.cancel();
+        }
+    }
+
     @Override
     public Map<String, Object> get(int index) {
         throw new UnsupportedOperationException();
@@ -89,6 +115,10 @@ public class ResultSetAdapter extends AbstractList<Map<String, Object>> implemen
 
     @Override
     public Iterator<Map<String, Object>> iterator() {
+        if (event == null) {
+            event = ResultSetIterationEvent.begin();
+        }
+
         return new Iterator<Map<String, Object>>() {
             private Boolean next = null;
 
@@ -128,6 +158,8 @@ public class ResultSetAdapter extends AbstractList<Map<String, Object>> implemen
 
                 next = null;
 
+                rowCount++;
+
                 return row;
             }
         };
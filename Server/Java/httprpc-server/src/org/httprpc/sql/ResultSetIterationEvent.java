@@ -0,0 +1,115 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc.sql;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Java Flight Recorder event emitted while a result set adapter is iterated.
+ * The event type is defined at runtime, so events are simply discarded when
+ * the Java runtime does not provide Flight Recorder support.
+ */
+class ResultSetIterationEvent {
+    private static MethodHandle isEnabled = null;
+    private static MethodHandle newEvent = null;
+
+    private static MethodHandle beginEvent = null;
+    private static MethodHandle setField = null;
+    private static MethodHandle commitEvent = null;
+
+    static {
+        try {
+            Class<?> eventFactoryType = Class.forName("jdk.jfr.EventFactory");
+            Class<?> eventTypeType = Class.forName("jdk.jfr.EventType");
+            Class<?> eventType = Class.forName("jdk.jfr.Event");
+            Class<?> valueDescriptorType = Class.forName("jdk.jfr.ValueDescriptor");
+
+            List<Object> annotationElements = new ArrayList<>(4);
+
+            annotationElements.add(getAnnotationElement("jdk.jfr.Name", "org.httprpc.ResultSetIteration"));
+            annotationElements.add(getAnnotationElement("jdk.jfr.Label", "Result Set Iteration"));
+            annotationElements.add(getAnnotationElement("jdk.jfr.Description", "Iteration of a result set, from the first row until the result set is closed"));
+            annotationElements.add(getAnnotationElement("jdk.jfr.Category", new String[] {"HTTP-RPC"}));
+
+            Object valueDescriptor = valueDescriptorType.getConstructor(Class.class, String.class, List.class).newInstance(long.class,
+                "rowsStreamed", Collections.singletonList(getAnnotationElement("jdk.jfr.Label", "rowsStreamed")));
+
+            Object eventFactory = eventFactoryType.getMethod("create", List.class, List.class).invoke(null,
+                annotationElements, Collections.singletonList(valueDescriptor));
+
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+            beginEvent = lookup.findVirtual(eventType, "begin", MethodType.methodType(Void.TYPE));
+            setField = lookup.findVirtual(eventType, "set", MethodType.methodType(Void.TYPE, Integer.TYPE, Object.class));
+            commitEvent = lookup.findVirtual(eventType, "commit", MethodType.methodType(Void.TYPE));
+
+            newEvent = lookup.findVirtual(eventFactoryType, "newEvent", MethodType.methodType(eventType))
+                .bindTo(eventFactory);
+
+            isEnabled = lookup.findVirtual(eventTypeType, "isEnabled", MethodType.methodType(Boolean.TYPE))
+                .bindTo(eventFactoryType.getMethod("getEventType").invoke(eventFactory));
+        } catch (ReflectiveOperationException | RuntimeException exception) {
+            // Flight Recorder is not available
+            isEnabled = null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object getAnnotationElement(String annotationTypeName, Object value) throws ReflectiveOperationException {
+        Class<? extends Annotation> annotationType = (Class<? extends Annotation>)Class.forName(annotationTypeName);
+
+        return Class.forName("jdk.jfr.AnnotationElement").getConstructor(Class.class, Object.class).newInstance(annotationType, value);
+    }
+
+    static Object begin() {
+        if (isEnabled == null) {
+            return null;
+        }
+
+        try {
+            if (!(boolean)isEnabled.invoke()) {
+                return null;
+            }
+
+            Object event = newEvent.invoke();
+
+            beginEvent.invoke(event);
+
+            return event;
+        } catch (Throwable throwable) {
+            return null;
+        }
+    }
+
+    static void commit(Object event, long rowsStreamed) {
+        if (event == null) {
+            return;
+        }
+
+        try {
+            setField.invoke(event, 0, rowsStreamed);
+
+            commitEvent.invoke(event);
+        } catch (Throwable throwable) {
+            // No-op
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ArgumentBinderTest {
+    @Test
+    public void testArrays() throws IOException {
+        Assert.assertArrayEquals(new long[] {1, 2, 3}, (long[])bind(Long.TYPE, "[1, 2, 3]"));
+        Assert.assertArrayEquals(new int[] {1, 2, 3}, (int[])bind(Integer.TYPE, "[1, 2, 3]"));
+        Assert.assertArrayEquals(new double[] {1.0, 2.5}, (double[])bind(Double.TYPE, "[1, 2.5]"), 0.0);
+    }
+
+    @Test
+    public void testNonIntegralArray() {
+        assertInvalid(Long.TYPE, "[1, 1.5]");
+        assertInvalid(Integer.TYPE, "[1.5]");
+    }
+
+    @Test
+    public void testOutOfRangeArray() {
+        assertInvalid(Integer.TYPE, "[2147483648]");
+    }
+
+    @Test
+    public void testNonNumericArray() {
+        assertInvalid(Long.TYPE, "[1, \"x\"]");
+        assertInvalid(Integer.TYPE, "\"x\"");
+        assertInvalid(Double.TYPE, "[true]");
+    }
+
+    @Test
+    public void testStructuredValue() {
+        ArgumentBinder binder = new ArgumentBinder.ValueBinder(new ArgumentConverters(Collections.<ArgumentConverterProvider>emptyList()).getConverter(Integer.TYPE));
+
+        assertInvalid(binder, "[1]");
+        assertInvalid(binder, "{\"a\": 1}");
+    }
+
+    private static Object bind(Class<?> componentType, String value) throws IOException {
+        return new ArgumentBinder.ArrayBinder(componentType).bind(getArguments(value), "value");
+    }
+
+    private static void assertInvalid(Class<?> componentType, String value) {
+        assertInvalid(new ArgumentBinder.ArrayBinder(componentType), value);
+    }
+
+    private static void assertInvalid(ArgumentBinder binder, String value) {
+        try {
+            binder.bind(getArguments(value), "value");
+        } catch (ArgumentBinder.InvalidStructureException exception) {
+            return;
+        } catch (Exception exception) {
+            Assert.fail(value + " " + exception);
+        }
+
+        Assert.fail(value);
+    }
+
+    private static RequestArguments getArguments(String value) {
+        return new RequestArguments(RequestArguments.readBody(new StringReader("{\"value\": " + value + "}")), null);
+    }
+}
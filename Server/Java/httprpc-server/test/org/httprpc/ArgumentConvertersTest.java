@@ -0,0 +1,81 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.httprpc;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.UUID;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ArgumentConvertersTest {
+    public enum Size {
+        SMALL,
+        LARGE
+    }
+
+    @Test
+    public void testPrimitiveConverters() {
+        ArgumentConverters argumentConverters = new ArgumentConverters(Collections.<ArgumentConverterProvider>emptyList());
+
+        Assert.assertEquals(0, argumentConverters.getConverter(Integer.TYPE).convert(null));
+        Assert.assertEquals(null, argumentConverters.getConverter(Integer.class).convert(null));
+        Assert.assertEquals(42L, argumentConverters.getConverter(Long.TYPE).convert("42"));
+        Assert.assertEquals(true, argumentConverters.getConverter(Boolean.TYPE).convert("true"));
+    }
+
+    @Test
+    public void testExtendedConverters() {
+        ArgumentConverters argumentConverters = new ArgumentConverters(Collections.<ArgumentConverterProvider>emptyList());
+
+        Assert.assertEquals(Size.LARGE, argumentConverters.getConverter(Size.class).convert("LARGE"));
+        Assert.assertEquals(new BigDecimal("1.10"), argumentConverters.getConverter(BigDecimal.class).convert("1.10"));
+        Assert.assertEquals(LocalDate.of(2016, 6, 28), argumentConverters.getConverter(LocalDate.class).convert("2016-06-28"));
+
+        UUID uuid = UUID.randomUUID();
+
+        Assert.assertEquals(uuid, argumentConverters.getConverter(UUID.class).convert(uuid.toString()));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidEnumValue() {
+        ArgumentConverters argumentConverters = new ArgumentConverters(Collections.<ArgumentConverterProvider>emptyList());
+
+        argumentConverters.getConverter(Size.class).convert("MEDIUM");
+    }
+
+    @Test
+    public void testConverterProvider() {
+        ArgumentConverters argumentConverters = new ArgumentConverters(Collections.<ArgumentConverterProvider>singletonList(new ArgumentConverterProvider() {
+            @Override
+            public ArgumentConverter getConverter(Class<?> type) {
+                if (type != StringBuilder.class) {
+                    return null;
+                }
+
+                return new ArgumentConverter() {
+                    @Override
+                    public Object convert(String value) {
+                        return (value == null) ? null : new StringBuilder(value);
+                    }
+                };
+            }
+        }));
+
+        Assert.assertEquals("abc", argumentConverters.getConverter(StringBuilder.class).convert("abc").toString());
+        Assert.assertNull(argumentConverters.getConverter(Object.class));
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BatchRequestTest {
+    public static class TestService extends WebService {
+        @RPC(method="GET", path="echo")
+        public String getEcho(String value) {
+            return value;
+        }
+
+        @RPC(method="GET", path="/version")
+        public String getVersion() {
+            return "1.0";
+        }
+
+        @RPC(method="GET", path="secret")
+        public String getSecret() {
+            return "secret";
+        }
+
+        @RPC(method="GET", path="user")
+        public String getUser() {
+            return getUserName() + " " + getUserRoles().contains("admin") + " " + getUserRoles().contains("guest") + " " + getLocale();
+        }
+
+        @RPC(method="GET", path="rows")
+        public Rows getRows() {
+            rowsStarted.countDown();
+
+            // Ignore interruption so that the call completes after being abandoned
+            while (rowsLatch.getCount() > 0) {
+                try {
+                    rowsLatch.await();
+                } catch (InterruptedException exception) {
+                    // No-op
+                }
+            }
+
+            return new Rows();
+        }
+    }
+
+    public static class Rows extends AbstractList<Integer> implements AutoCloseable {
+        @Override
+        public Integer get(int index) {
+            return index;
+        }
+
+        @Override
+        public int size() {
+            return 1;
+        }
+
+        @Override
+        public void close() {
+            closed.incrementAndGet();
+        }
+    }
+
+    private static CountDownLatch rowsStarted = null;
+    private static CountDownLatch rowsLatch = null;
+    private static AtomicInteger closed = new AtomicInteger();
+
+    private static class Response {
+        int status = HttpServletResponse.SC_OK;
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+    }
+
+    @Test
+    public void testOperations() throws Exception {
+        RequestDispatcherServlet servlet = newServlet();
+
+        String body = execute(servlet, null, "[{\"method\": \"GET\", \"path\": \"/echo\", \"arguments\": {\"value\": \"x\"}},"
+            + " {\"method\": \"GET\", \"path\": \"/secret\"}]", false).body.toString("UTF-8").replaceAll("\\s", "");
+
+        Assert.assertEquals("[{\"status\":200,\"result\":\"x\"},{\"status\":403}]", body);
+    }
+
+    @Test
+    public void testLeadingSlash() throws Exception {
+        RequestDispatcherServlet servlet = newServlet();
+
+        // Methods declared with a leading slash match the allow-list with or without one
+        String body = execute(servlet, null, "[{\"method\": \"GET\", \"path\": \"/version\"},"
+            + " {\"method\": \"GET\", \"path\": \"version\"}]", false).body.toString("UTF-8").replaceAll("\\s", "");
+
+        Assert.assertEquals("[{\"status\":200,\"result\":\"1.0\"},{\"status\":200,\"result\":\"1.0\"}]", body);
+    }
+
+    @Test
+    public void testIdentity() throws Exception {
+        RequestDispatcherServlet servlet = newServlet();
+
+        String body = execute(servlet, "alice", "[{\"method\": \"GET\", \"path\": \"/user\"}]", false).body.toString("UTF-8").replaceAll("\\s+", " ");
+
+        // Roles that are not listed in batchRoles cannot be resolved
+        Assert.assertTrue(body, body.contains("\"alice true false en_US\""));
+    }
+
+    @Test
+    public void testDisconnect() throws Exception {
+        RequestDispatcherServlet servlet = newServlet();
+
+        rowsStarted = new CountDownLatch(2);
+        rowsLatch = new CountDownLatch(1);
+        closed.set(0);
+
+        execute(servlet, null, "[{\"method\": \"GET\", \"path\": \"/rows\"}, {\"method\": \"GET\", \"path\": \"/rows\"}]", true);
+
+        rowsLatch.countDown();
+
+        // Results produced after the response was abandoned must still be closed
+        long timeout = System.currentTimeMillis() + 5000;
+
+        while (closed.get() < 2 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+
+        Assert.assertEquals(2, closed.get());
+    }
+
+    private static RequestDispatcherServlet newServlet() throws Exception {
+        final HashMap<String, String> initParameters = new HashMap<>();
+
+        initParameters.put("serviceClassName", TestService.class.getName());
+        initParameters.put("batchPath", "batch");
+        initParameters.put("batchOperations", "/echo user rows version");
+        initParameters.put("batchRoles", "admin");
+        initParameters.put("maxBatchConcurrency", "4");
+
+        RequestDispatcherServlet servlet = new RequestDispatcherServlet();
+
+        servlet.init((ServletConfig)Proxy.newProxyInstance(BatchRequestTest.class.getClassLoader(),
+            new Class<?>[] {ServletConfig.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] arguments) {
+                switch (method.getName()) {
+                    case "getInitParameter": {
+                        return initParameters.get(arguments[0]);
+                    }
+
+                    case "getServletName": {
+                        return "test";
+                    }
+
+                    default: {
+                        return null;
+                    }
+                }
+            }
+        }));
+
+        return servlet;
+    }
+
+    private static Response execute(RequestDispatcherServlet servlet, final String userName, String calls,
+        final boolean disconnected) throws Exception {
+        final byte[] content = calls.getBytes(StandardCharsets.UTF_8);
+
+        final Thread thread = Thread.currentThread();
+
+        final Map<String, Object> attributes = new HashMap<>();
+
+        HttpServletRequest request = (HttpServletRequest)Proxy.newProxyInstance(BatchRequestTest.class.getClassLoader(),
+            new Class<?>[] {HttpServletRequest.class}, new InvocationHandler() {
+            private String characterEncoding = null;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] arguments) throws IOException {
+                // The request may only be accessed by the container thread
+                if (Thread.currentThread() != thread) {
+                    throw new IllegalStateException("Request accessed by " + Thread.currentThread().getName() + ".");
+                }
+
+                switch (method.getName()) {
+                    case "getMethod": {
+                        return "POST";
+                    }
+
+                    case "getPathInfo": {
+                        return "/batch";
+                    }
+
+                    case "getContentType": {
+                        return "application/json";
+                    }
+
+                    case "getCharacterEncoding": {
+                        return characterEncoding;
+                    }
+
+                    case "setCharacterEncoding": {
+                        characterEncoding = (String)arguments[0];
+
+                        return null;
+                    }
+
+                    case "getReader": {
+                        return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8));
+                    }
+
+                    case "getLocale": {
+                        return Locale.US;
+                    }
+
+                    case "getUserPrincipal": {
+                        if (userName == null) {
+                            return null;
+                        }
+
+                        return new Principal() {
+                            @Override
+                            public String getName() {
+                                return userName;
+                            }
+                        };
+                    }
+
+                    case "isUserInRole": {
+                        return arguments[0].equals("admin") || arguments[0].equals("guest");
+                    }
+
+                    case "getAttribute": {
+                        return attributes.get(arguments[0]);
+                    }
+
+                    case "setAttribute": {
+                        attributes.put((String)arguments[0], arguments[1]);
+
+                        return null;
+                    }
+
+                    default: {
+                        return null;
+                    }
+                }
+            }
+        });
+
+        final Response response = new Response();
+
+        final ServletOutputStream outputStream = new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                if (disconnected) {
+                    // Disconnect once the calls are in progress
+                    try {
+                        rowsStarted.await();
+                    } catch (InterruptedException exception) {
+                        throw new IOException(exception);
+                    }
+
+                    throw new IOException("Disconnected.");
+                }
+
+                response.body.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                // No-op
+            }
+        };
+
+        servlet.service(request, (HttpServletResponse)Proxy.newProxyInstance(BatchRequestTest.class.getClassLoader(),
+            new Class<?>[] {HttpServletResponse.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] arguments) {
+                switch (method.getName()) {
+                    case "setStatus": {
+                        response.status = (Integer)arguments[0];
+
+                        return null;
+                    }
+
+                    case "getOutputStream": {
+                        return outputStream;
+                    }
+
+                    case "isCommitted": {
+                        return false;
+                    }
+
+                    default: {
+                        return null;
+                    }
+                }
+            }
+        }));
+
+        return response;
+    }
+}
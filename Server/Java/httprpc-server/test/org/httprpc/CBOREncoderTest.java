@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.httprpc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CBOREncoderTest {
+    @Test
+    public void testSimpleValues() throws IOException {
+        Assert.assertArrayEquals(new byte[] {(byte)0xf6}, encode(null));
+        Assert.assertArrayEquals(new byte[] {(byte)0xf5}, encode(true));
+        Assert.assertArrayEquals(new byte[] {0x17}, encode(23));
+        Assert.assertArrayEquals(new byte[] {0x18, 0x18}, encode(24));
+        Assert.assertArrayEquals(new byte[] {0x39, 0x01, (byte)0xf3}, encode(-500L));
+        Assert.assertArrayEquals(new byte[] {0x63, 'a', 'b', 'c'}, encode("abc"));
+        Assert.assertArrayEquals(new byte[] {(byte)0xfb, 0x3f, (byte)0xf8, 0, 0, 0, 0, 0, 0}, encode(1.5));
+    }
+
+    @Test
+    public void testStructures() throws IOException {
+        Assert.assertArrayEquals(new byte[] {(byte)0x82, 0x01, 0x02}, encode(Arrays.asList(1, 2)));
+        Assert.assertArrayEquals(new byte[] {(byte)0x82, (byte)0xf5, (byte)0xf4}, encode(new boolean[] {true, false}));
+
+        Map<String, Object> map = new LinkedHashMap<>();
+
+        map.put("a", 1);
+
+        Assert.assertArrayEquals(new byte[] {(byte)0xbf, 0x61, 'a', 0x01, (byte)0xff}, encode(map));
+    }
+
+    @Test
+    public void testFlushInterval() throws IOException {
+        final int[] flushes = new int[1];
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream() {
+            @Override
+            public void flush() {
+                flushes[0]++;
+            }
+        };
+
+        List<Integer> row = Arrays.asList(1, 2, 3);
+
+        new CBOREncoder(2).writeValue(Arrays.asList(row, row, row, row), outputStream);
+
+        // Flushed after the first, second, and fourth rows, and on completion
+        Assert.assertEquals(4, flushes[0]);
+    }
+
+    private static byte[] encode(Object value) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        new CBOREncoder().writeValue(value, outputStream);
+
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.httprpc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompressedOutputStreamTest {
+    private static class TestOutputStream extends CompressedOutputStream {
+        public boolean compressed = false;
+        public int length = -1;
+
+        public TestOutputStream(ByteArrayOutputStream outputStream, String encoding, int threshold) {
+            super(outputStream, encoding, threshold, new DeflaterPool(Deflater.DEFAULT_COMPRESSION, encoding.equals(GZIP_ENCODING), 1));
+        }
+
+        @Override
+        protected void compressionStarted() {
+            compressed = true;
+        }
+
+        @Override
+        protected void compressionSkipped(int length) {
+            this.length = length;
+        }
+    }
+
+    private static final String TEXT = "Lorem ipsum dolor sit amet, consectetur adipiscing elit.";
+
+    @Test
+    public void testBelowThreshold() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        TestOutputStream compressedOutputStream = new TestOutputStream(outputStream, CompressedOutputStream.GZIP_ENCODING, 1024);
+
+        compressedOutputStream.write(TEXT.getBytes(StandardCharsets.UTF_8));
+        compressedOutputStream.close();
+
+        Assert.assertFalse(compressedOutputStream.compressed);
+        Assert.assertEquals(TEXT.length(), compressedOutputStream.length);
+        Assert.assertEquals(TEXT, new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testGZIP() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        TestOutputStream compressedOutputStream = new TestOutputStream(outputStream, CompressedOutputStream.GZIP_ENCODING, 16);
+
+        compressedOutputStream.write(TEXT.getBytes(StandardCharsets.UTF_8));
+        compressedOutputStream.close();
+
+        Assert.assertTrue(compressedOutputStream.compressed);
+        Assert.assertEquals(TEXT, read(new GZIPInputStream(new ByteArrayInputStream(outputStream.toByteArray()))));
+    }
+
+    @Test
+    public void testDeflate() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        TestOutputStream compressedOutputStream = new TestOutputStream(outputStream, CompressedOutputStream.DEFLATE_ENCODING, 0);
+
+        byte[] bytes = TEXT.getBytes(StandardCharsets.UTF_8);
+
+        for (int i = 0; i < bytes.length; i++) {
+            compressedOutputStream.write(bytes[i]);
+        }
+
+        compressedOutputStream.close();
+
+        Assert.assertTrue(compressedOutputStream.compressed);
+        Assert.assertEquals(TEXT, read(new InflaterInputStream(new ByteArrayInputStream(outputStream.toByteArray()))));
+    }
+
+    private static String read(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        int b;
+        while ((b = inputStream.read()) != -1) {
+            outputStream.write(b);
+        }
+
+        return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConcurrencyLimiterTest {
+    @Test
+    public void testFixedLimit() throws InterruptedException {
+        ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(2, false);
+
+        Assert.assertTrue(concurrencyLimiter.acquire(0));
+        Assert.assertTrue(concurrencyLimiter.acquire(0));
+        Assert.assertFalse(concurrencyLimiter.acquire(10));
+
+        Assert.assertEquals(2, concurrencyLimiter.getInFlight());
+
+        concurrencyLimiter.release(1000000, false);
+
+        Assert.assertEquals(2, concurrencyLimiter.getLimit());
+        Assert.assertTrue(concurrencyLimiter.acquire(0));
+    }
+
+    @Test
+    public void testQueuedAcquire() throws InterruptedException {
+        final ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(1, false);
+
+        Assert.assertTrue(concurrencyLimiter.acquire(0));
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException exception) {
+                    throw new RuntimeException(exception);
+                }
+
+                concurrencyLimiter.release(0, true);
+            }
+        });
+
+        thread.start();
+
+        Assert.assertTrue(concurrencyLimiter.acquire(5000));
+
+        thread.join();
+    }
+
+    @Test
+    public void testAdaptiveLimit() throws InterruptedException {
+        ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(10, true);
+
+        for (int i = 0; i < 10; i++) {
+            concurrencyLimiter.acquire(0);
+        }
+
+        // Latency well above the baseline reduces the limit
+        concurrencyLimiter.release(1000, true);
+
+        for (int i = 0; i < 9; i++) {
+            concurrencyLimiter.release(10000, true);
+        }
+
+        int limit = concurrencyLimiter.getLimit();
+
+        Assert.assertTrue(limit < 10);
+
+        // Failures reduce the limit, but never below 1
+        for (int i = 0; i < 100; i++) {
+            concurrencyLimiter.acquire(0);
+            concurrencyLimiter.release(1000, false);
+        }
+
+        Assert.assertEquals(1, concurrencyLimiter.getLimit());
+
+        // Latency within tolerance of the baseline grows the limit while it is in use
+        for (int i = 0; i < 100; i++) {
+            concurrencyLimiter.acquire(0);
+            concurrencyLimiter.release(1000, true);
+        }
+
+        Assert.assertTrue(concurrencyLimiter.getLimit() > 1);
+    }
+
+    @Test
+    public void testBackoffWindow() throws InterruptedException {
+        ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(10, true);
+
+        for (int i = 0; i < 10; i++) {
+            concurrencyLimiter.acquire(0);
+        }
+
+        // Executions admitted under the previous limit reduce it only once
+        for (int i = 0; i < 10; i++) {
+            concurrencyLimiter.release(1000, false);
+        }
+
+        Assert.assertEquals(9, concurrencyLimiter.getLimit());
+
+        concurrencyLimiter.acquire(0);
+        concurrencyLimiter.release(1000, false);
+
+        Assert.assertEquals(8, concurrencyLimiter.getLimit());
+    }
+
+    @Test
+    public void testReleaseWithoutSample() throws InterruptedException {
+        ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(10, true);
+
+        concurrencyLimiter.acquire(0);
+        concurrencyLimiter.release(1000, true);
+
+        // Releasing without a sample affects neither the limit nor the baseline
+        for (int i = 0; i < 10; i++) {
+            concurrencyLimiter.acquire(0);
+            concurrencyLimiter.release();
+        }
+
+        Assert.assertEquals(10, concurrencyLimiter.getLimit());
+        Assert.assertEquals(0, concurrencyLimiter.getInFlight());
+
+        concurrencyLimiter.acquire(0);
+        concurrencyLimiter.release(1500, true);
+
+        Assert.assertEquals(10, concurrencyLimiter.getLimit());
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HTTPServerTest {
+    public static class TestService extends WebService {
+        @RPC(method="GET", path="sum")
+        public int getSum(int a, int b) {
+            return a + b;
+        }
+
+        @RPC(method="POST", path="echo")
+        public String postEcho(String value) {
+            return value;
+        }
+    }
+
+    private static class Response {
+        int status;
+        TreeMap<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        String body;
+    }
+
+    private static final String FORM_CONTENT_TYPE = "Content-Type: application/x-www-form-urlencoded\r\n";
+    private static final String JSON_CONTENT_TYPE = "Content-Type: application/json\r\n";
+
+    @Test
+    public void testKeepAlive() throws IOException {
+        try (HTTPServer server = startServer(); Socket socket = connect(server)) {
+            InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+
+            write(socket, "GET /sum?a=1&b=2 HTTP/1.1\r\nHost: localhost\r\n\r\n");
+
+            Assert.assertEquals("3", readResponse(inputStream).body);
+
+            // The connection remains open for the next request
+            write(socket, "GET /sum?a=3&b=4 HTTP/1.1\r\nHost: localhost\r\n\r\n");
+
+            Assert.assertEquals("7", readResponse(inputStream).body);
+
+            write(socket, "GET /sum?a=5&b=6 HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+
+            Assert.assertEquals("11", readResponse(inputStream).body);
+            Assert.assertNull(readResponse(inputStream));
+        }
+    }
+
+    @Test
+    public void testPipelining() throws IOException {
+        try (HTTPServer server = startServer(); Socket socket = connect(server)) {
+            InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+
+            write(socket, "GET /sum?a=1&b=2 HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                + "POST /echo HTTP/1.1\r\nHost: localhost\r\n" + FORM_CONTENT_TYPE + "Content-Length: 9\r\n\r\nvalue=abc"
+                + "GET /sum?a=3&b=4 HTTP/1.1\r\nHost: localhost\r\n\r\n");
+
+            Assert.assertEquals("3", readResponse(inputStream).body);
+            Assert.assertEquals("\"abc\"", readResponse(inputStream).body);
+            Assert.assertEquals("7", readResponse(inputStream).body);
+        }
+    }
+
+    @Test
+    public void testChunkedBody() throws IOException {
+        try (HTTPServer server = startServer(); Socket socket = connect(server)) {
+            InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+
+            write(socket, "POST /echo HTTP/1.1\r\nHost: localhost\r\n" + FORM_CONTENT_TYPE + "Transfer-Encoding: chunked\r\n\r\n"
+                + "6\r\nvalue=\r\n5;name=x\r\nhello\r\n0\r\nTrailer: x\r\n\r\n");
+
+            Response response = readResponse(inputStream);
+
+            Assert.assertEquals(200, response.status);
+            Assert.assertEquals("\"hello\"", response.body);
+
+            // The connection remains usable after the chunked body
+            write(socket, "GET /sum?a=1&b=2 HTTP/1.1\r\nHost: localhost\r\n\r\n");
+
+            Assert.assertEquals("3", readResponse(inputStream).body);
+        }
+    }
+
+    @Test
+    public void testContinue() throws IOException {
+        try (HTTPServer server = startServer(); Socket socket = connect(server)) {
+            InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+
+            write(socket, "POST /echo HTTP/1.1\r\nHost: localhost\r\n" + FORM_CONTENT_TYPE + "Content-Length: 9\r\nExpect: 100-continue\r\n\r\n");
+
+            Assert.assertEquals(100, readResponse(inputStream).status);
+
+            write(socket, "value=abc");
+
+            Assert.assertEquals("\"abc\"", readResponse(inputStream).body);
+        }
+    }
+
+    @Test
+    public void testIdleTimeout() throws IOException {
+        HTTPServer server = new HTTPServer(0, TestService.class);
+
+        server.setIdleTimeout(100);
+
+        server.start();
+
+        try (Socket socket = connect(server)) {
+            InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+
+            write(socket, "GET /sum?a=1&b=2 HTTP/1.1\r\nHost: localhost\r\n\r\n");
+
+            Assert.assertEquals("3", readResponse(inputStream).body);
+
+            // The server closes the connection once it has been idle for too long
+            Assert.assertNull(readResponse(inputStream));
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testHeaderTimeout() throws IOException {
+        HTTPServer server = new HTTPServer(0, TestService.class);
+
+        server.setHeaderTimeout(100);
+
+        server.start();
+
+        try (Socket socket = connect(server)) {
+            InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+
+            // A client that never finishes its headers is disconnected
+            write(socket, "GET /sum?a=1&b=2 HTTP/1.1\r\nHost: localhost\r\n");
+
+            Assert.assertNull(readResponse(inputStream));
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testMalformedInput() throws IOException {
+        try (HTTPServer server = startServer()) {
+            Assert.assertEquals(400, execute(server, "GARBAGE\r\n\r\n").status);
+            Assert.assertEquals(505, execute(server, "GET /sum HTTP/2.0\r\n\r\n").status);
+
+            // Whitespace before the colon and obsolete line folding
+            Assert.assertEquals(400, execute(server, "GET /sum?a=1&b=2 HTTP/1.1\r\nHost : localhost\r\n\r\n").status);
+            Assert.assertEquals(400, execute(server, "GET /sum?a=1&b=2 HTTP/1.1\r\nHost: localhost\r\n X-Folded: x\r\n\r\n").status);
+
+            // Conflicting message framing
+            Response response = execute(server, "POST /echo HTTP/1.1\r\nHost: localhost\r\n" + FORM_CONTENT_TYPE
+                + "Content-Length: 9\r\nTransfer-Encoding: chunked\r\n\r\n9\r\nvalue=abc\r\n0\r\n\r\n");
+
+            Assert.assertEquals(400, response.status);
+            Assert.assertEquals("close", response.headers.get("Connection"));
+
+            Assert.assertEquals(400, execute(server, "POST /echo HTTP/1.1\r\nHost: localhost\r\n" + FORM_CONTENT_TYPE
+                + "Content-Length: +9\r\n\r\nvalue=abc").status);
+
+            // Signed chunk sizes close the connection without a response
+            Assert.assertNull(execute(server, "POST /echo HTTP/1.1\r\nHost: localhost\r\n" + FORM_CONTENT_TYPE
+                + "Transfer-Encoding: chunked\r\n\r\n+9\r\nvalue=abc\r\n0\r\n\r\n"));
+            Assert.assertNull(execute(server, "POST /echo HTTP/1.1\r\nHost: localhost\r\n" + FORM_CONTENT_TYPE
+                + "Transfer-Encoding: chunked\r\n\r\n-0\r\n\r\n"));
+        }
+    }
+
+    @Test
+    public void testInvalidArguments() throws IOException {
+        try (HTTPServer server = startServer()) {
+            // Structured values cannot be bound to scalar parameters
+            Assert.assertEquals(400, execute(server, "POST /echo HTTP/1.1\r\nHost: localhost\r\n" + JSON_CONTENT_TYPE
+                + "Content-Length: 14\r\n\r\n{\"value\": [1]}").status);
+        }
+    }
+
+    @Test
+    public void testContentTooLarge() throws IOException {
+        HTTPServer server = new HTTPServer(0, TestService.class);
+
+        server.setMaxContentLength(8);
+
+        server.start();
+
+        try {
+            Assert.assertEquals(413, execute(server, "POST /echo HTTP/1.1\r\nHost: localhost\r\n" + FORM_CONTENT_TYPE
+                + "Content-Length: 9\r\n\r\nvalue=abc").status);
+
+            Assert.assertEquals(413, execute(server, "POST /echo HTTP/1.1\r\nHost: localhost\r\n" + FORM_CONTENT_TYPE
+                + "Transfer-Encoding: chunked\r\n\r\n6\r\nvalue=\r\n3\r\nabc\r\n0\r\n\r\n").status);
+
+            // JSON bodies are limited in the same way, while malformed ones remain client errors
+            Assert.assertEquals(413, execute(server, "POST /echo HTTP/1.1\r\nHost: localhost\r\n" + JSON_CONTENT_TYPE
+                + "Transfer-Encoding: chunked\r\n\r\n9\r\n{\"value\":\r\n6\r\n\"abc\"}\r\n0\r\n\r\n").status);
+
+            Assert.assertEquals(400, execute(server, "POST /echo HTTP/1.1\r\nHost: localhost\r\n" + JSON_CONTENT_TYPE
+                + "Transfer-Encoding: chunked\r\n\r\n2\r\n{\"\r\n0\r\n\r\n").status);
+
+            Assert.assertEquals("\"ab\"", execute(server, "POST /echo HTTP/1.1\r\nHost: localhost\r\n" + FORM_CONTENT_TYPE
+                + "Content-Length: 8\r\n\r\nvalue=ab").body);
+        } finally {
+            server.close();
+        }
+    }
+
+    private static HTTPServer startServer() throws IOException {
+        HTTPServer server = new HTTPServer(0, TestService.class);
+
+        server.start();
+
+        return server;
+    }
+
+    private static Socket connect(HTTPServer server) throws IOException {
+        Socket socket = new Socket("localhost", server.getPort());
+
+        socket.setSoTimeout(10000);
+
+        return socket;
+    }
+
+    private static Response execute(HTTPServer server, String request) throws IOException {
+        try (Socket socket = connect(server)) {
+            write(socket, request);
+
+            return readResponse(new BufferedInputStream(socket.getInputStream()));
+        }
+    }
+
+    private static void write(Socket socket, String content) throws IOException {
+        OutputStream outputStream = socket.getOutputStream();
+
+        outputStream.write(content.getBytes(StandardCharsets.ISO_8859_1));
+        outputStream.flush();
+    }
+
+    private static Response readResponse(InputStream inputStream) throws IOException {
+        String statusLine;
+        try {
+            statusLine = readLine(inputStream);
+        } catch (IOException exception) {
+            // The connection was reset
+            return null;
+        }
+
+        if (statusLine == null) {
+            return null;
+        }
+
+        Response response = new Response();
+
+        response.status = Integer.parseInt(statusLine.split(" ")[1]);
+
+        String header;
+        while (!(header = readLine(inputStream)).isEmpty()) {
+            int i = header.indexOf(':');
+
+            response.headers.put(header.substring(0, i), header.substring(i + 1).trim());
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        if ("chunked".equals(response.headers.get("Transfer-Encoding"))) {
+            int size;
+            while ((size = Integer.parseInt(readLine(inputStream), 16)) > 0) {
+                for (int i = 0; i < size; i++) {
+                    body.write(inputStream.read());
+                }
+
+                readLine(inputStream);
+            }
+
+            readLine(inputStream);
+        } else {
+            String contentLength = response.headers.get("Content-Length");
+
+            int length = (contentLength == null) ? 0 : Integer.parseInt(contentLength);
+
+            for (int i = 0; i < length; i++) {
+                body.write(inputStream.read());
+            }
+        }
+
+        response.body = new String(body.toByteArray(), StandardCharsets.UTF_8);
+
+        return response;
+    }
+
+    private static String readLine(InputStream inputStream) throws IOException {
+        StringBuilder lineBuilder = new StringBuilder();
+
+        int b;
+        while ((b = inputStream.read()) != '\n') {
+            if (b == -1) {
+                return null;
+            }
+
+            if (b != '\r') {
+                lineBuilder.append((char)b);
+            }
+        }
+
+        return lineBuilder.toString();
+    }
+}
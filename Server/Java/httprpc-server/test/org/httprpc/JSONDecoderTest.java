@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.httprpc;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JSONDecoderTest {
+    @Test
+    public void testValues() throws IOException {
+        Assert.assertEquals("abc\n\u00e9", decode("\"abc\\n\\u00e9\""));
+        Assert.assertEquals(42L, decode("42"));
+        Assert.assertEquals(-1.5, decode("-1.5e0"));
+        Assert.assertEquals(true, decode("true"));
+        Assert.assertEquals(null, decode("null"));
+    }
+
+    @Test
+    public void testStructures() throws IOException {
+        Map<String, Object> map = new LinkedHashMap<>();
+
+        map.put("a", Arrays.asList("x", true));
+        map.put("b", Collections.emptyMap());
+
+        Assert.assertEquals(map, decode("{\"a\": [\"x\", true], \"b\": {}}"));
+    }
+
+    @Test
+    public void testNumberList() throws IOException {
+        JSONDecoder.NumberList numberList = (JSONDecoder.NumberList)decode("[1, 2, 3]");
+
+        Assert.assertArrayEquals(new int[] {1, 2, 3}, numberList.toIntArray());
+        Assert.assertArrayEquals(new long[] {1, 2, 3}, numberList.toLongArray());
+
+        numberList = (JSONDecoder.NumberList)decode("[1, 2.5]");
+
+        Assert.assertArrayEquals(new double[] {1.0, 2.5}, numberList.toDoubleArray(), 0.0);
+        Assert.assertEquals(Arrays.asList(1.0, 2.5), numberList);
+    }
+
+    @Test(expected=IOException.class)
+    public void testInvalidInput() throws IOException {
+        decode("{\"a\": ");
+    }
+
+    private static Object decode(String text) throws IOException {
+        return new JSONDecoder().readValue(new StringReader(text));
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JSONEncoderTest {
+    @Test
+    public void testValues() throws IOException {
+        Map<String, Object> map = new LinkedHashMap<>();
+
+        map.put("a", "x\"y");
+        map.put("b", Arrays.asList(1, true, null));
+
+        Assert.assertEquals("{\"a\":\"x\\\"y\",\"b\":[1,true,null]}", encode(new JSONEncoder(), map).replaceAll("\\s", ""));
+    }
+
+    @Test
+    public void testFlushInterval() throws IOException {
+        final int[] flushes = new int[1];
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream() {
+            @Override
+            public void flush() {
+                flushes[0]++;
+            }
+        };
+
+        List<Integer> row = Arrays.asList(1, 2, 3);
+
+        Map<String, Object> map = new LinkedHashMap<>();
+
+        map.put("rows", Arrays.asList(row, row, row, row));
+
+        new JSONEncoder(2).writeValue(map, outputStream);
+
+        // Flushed after the first, second, and fourth rows, and on completion
+        Assert.assertEquals(4, flushes[0]);
+    }
+
+    private static String encode(JSONEncoder encoder, Object value) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        encoder.writeValue(value, outputStream);
+
+        return new String(outputStream.toByteArray(), "UTF-8");
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+    @Test
+    public void testBuckets() {
+        for (long value = 0; value < 1 << 20; value++) {
+            int index = LatencyHistogram.getIndex(value);
+
+            Assert.assertTrue(value <= LatencyHistogram.getUpperBound(index));
+            Assert.assertTrue(index == 0 || value > LatencyHistogram.getUpperBound(index - 1));
+        }
+
+        Assert.assertEquals(LatencyHistogram.getIndex(Long.MAX_VALUE), LatencyHistogram.getIndex(1L << 50));
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        Assert.assertEquals(0, histogram.getPercentile(99));
+
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(500.5, histogram.getMean(), 0);
+        Assert.assertEquals(1000, histogram.getMax());
+
+        assertApproximatelyEquals(500, histogram.getPercentile(50));
+        assertApproximatelyEquals(990, histogram.getPercentile(99));
+        Assert.assertEquals(1000, histogram.getPercentile(100));
+    }
+
+    private static void assertApproximatelyEquals(long expected, long actual) {
+        Assert.assertTrue(actual >= expected && actual <= expected * 1.07);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.util.HashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ResourceTest {
+    @Test
+    public void testLiteralMatch() {
+        Resource root = new Resource();
+
+        Resource recent = add(root, "notes", "recent");
+        Resource note = add(root, "notes", "{id}");
+
+        HashMap<String, String> pathVariables = new HashMap<>();
+
+        Assert.assertSame(recent, root.lookup("/notes/recent", pathVariables));
+        Assert.assertTrue(pathVariables.isEmpty());
+
+        Assert.assertSame(note, root.lookup("/notes/101", pathVariables));
+        Assert.assertEquals("101", pathVariables.get("id"));
+    }
+
+    @Test
+    public void testVariableFallback() {
+        Resource root = new Resource();
+
+        add(root, "notes", "recent");
+
+        Resource comments = add(root, "notes", "{id}", "comments");
+
+        HashMap<String, String> pathVariables = new HashMap<>();
+
+        Assert.assertSame(comments, root.lookup("/notes/recent/comments", pathVariables));
+        Assert.assertEquals("recent", pathVariables.get("id"));
+    }
+
+    @Test
+    public void testIntermediateFallback() {
+        Resource root = new Resource();
+
+        add(root, "items", "all", "names");
+
+        Resource item = add(root, "items", "{id}");
+
+        HashMap<String, String> pathVariables = new HashMap<>();
+
+        Assert.assertSame(item, root.lookup("/items/all", pathVariables));
+        Assert.assertEquals("all", pathVariables.get("id"));
+    }
+
+    @Test
+    public void testNoMatch() {
+        Resource root = new Resource();
+
+        add(root, "notes", "recent");
+        add(root, "notes", "{id}", "comments");
+
+        HashMap<String, String> pathVariables = new HashMap<>();
+
+        Assert.assertNull(root.lookup("/notes/recent/likes", pathVariables));
+        Assert.assertTrue(pathVariables.isEmpty());
+
+        Assert.assertNull(root.lookup("/notes", pathVariables));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testConflictingVariableNames() {
+        Resource root = new Resource();
+
+        add(root, "notes", "{id}");
+        add(root, "notes", "{noteID}");
+    }
+
+    private static Resource add(Resource root, String... components) {
+        Resource resource = root;
+
+        for (int i = 0; i < components.length; i++) {
+            resource = resource.getResource(components[i]);
+        }
+
+        resource.handlerSets[Verb.GET.ordinal()] = new HandlerSet();
+
+        return resource;
+    }
+}
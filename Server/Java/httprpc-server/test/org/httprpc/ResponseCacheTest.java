@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ResponseCacheTest {
+    @Test
+    public void testGet() {
+        ResponseCache responseCache = new ResponseCache(60, 2, false);
+
+        BufferedResponse response = new BufferedResponse(new byte[] {1, 2, 3}, "\"a\"");
+
+        responseCache.put("a", response);
+
+        Assert.assertSame(response, responseCache.get("a"));
+        Assert.assertNull(responseCache.get("b"));
+    }
+
+    @Test
+    public void testEviction() throws InterruptedException {
+        ResponseCache responseCache = new ResponseCache(60, 2, false);
+
+        responseCache.put("a", new BufferedResponse(new byte[0], null));
+        Thread.sleep(1);
+        responseCache.put("b", new BufferedResponse(new byte[0], null));
+        Thread.sleep(1);
+
+        // The least recently used entry is discarded first
+        Assert.assertNotNull(responseCache.get("a"));
+        Thread.sleep(1);
+
+        responseCache.put("c", new BufferedResponse(new byte[0], null));
+
+        Assert.assertNotNull(responseCache.get("a"));
+        Assert.assertNull(responseCache.get("b"));
+        Assert.assertNotNull(responseCache.get("c"));
+    }
+
+    @Test
+    public void testCapacity() {
+        ResponseCache responseCache = new ResponseCache(60, 2, false);
+
+        for (int i = 0; i < 100; i++) {
+            responseCache.put(Integer.toString(i), new BufferedResponse(new byte[0], null));
+        }
+
+        // Each insertion evicts at most the single eldest entry
+        Assert.assertNull(responseCache.get("97"));
+        Assert.assertNotNull(responseCache.get("98"));
+        Assert.assertNotNull(responseCache.get("99"));
+    }
+
+    @Test
+    public void testExpiration() throws InterruptedException {
+        ResponseCache responseCache = new ResponseCache(0, 2, false);
+
+        responseCache.put("a", new BufferedResponse(new byte[0], null));
+        Thread.sleep(1);
+
+        Assert.assertNull(responseCache.get("a"));
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.util.Locale;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ResponseEncodersTest {
+    @Test
+    public void testMediaType() {
+        Assert.assertEquals("application/json", ResponseEncoders.getMediaType(" application/json ; charset=UTF-8"));
+        Assert.assertEquals("text/plain", ResponseEncoders.getMediaType("text/plain"));
+    }
+
+    @Test
+    public void testMediaTypeLocale() {
+        Locale locale = Locale.getDefault();
+
+        // Case conversion must not depend on the default locale's rules
+        Locale.setDefault(new Locale("tr", "TR"));
+
+        try {
+            Assert.assertEquals("application/json", ResponseEncoders.getMediaType("APPLICATION/JSON"));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RouteIndexTest {
+    public static class MathService extends WebService {
+        @RPC(method="GET", path="sum")
+        public double getSum(double a, double b) {
+            return a + b;
+        }
+
+        @RPC(method="GET", path="sum")
+        public double getSum(double[] values) {
+            double total = 0;
+
+            for (int i = 0; i < values.length; i++) {
+                total += values[i];
+            }
+
+            return total;
+        }
+    }
+
+    public static class StatisticsService extends WebService {
+        @RPC(method="GET", path="sum")
+        public double getSum(double[] values) {
+            return 0;
+        }
+
+        @RPC(method="POST", path="sum")
+        public double postSum(double[] values) {
+            return 0;
+        }
+    }
+
+    public static class ReportService extends WebService {
+        @RPC(method="GET", path="math/sum")
+        public double getSum(double a, double b) {
+            return 0;
+        }
+    }
+
+    @Test
+    public void testOverloads() {
+        Map<String, Class<?>> serviceTypes = new LinkedHashMap<>();
+
+        RouteIndex.putServiceType(serviceTypes, "", MathService.class);
+
+        Assert.assertEquals(2, new RouteIndex(serviceTypes).getHandlers().size());
+    }
+
+    @Test
+    public void testPrefixes() {
+        Map<String, Class<?>> serviceTypes = new LinkedHashMap<>();
+
+        RouteIndex.putServiceType(serviceTypes, "math", MathService.class);
+        RouteIndex.putServiceType(serviceTypes, "statistics", StatisticsService.class);
+
+        Assert.assertEquals(4, new RouteIndex(serviceTypes).getHandlers().size());
+    }
+
+    @Test
+    public void testDuplicateRoute() {
+        Map<String, Class<?>> serviceTypes = new LinkedHashMap<>();
+
+        RouteIndex.putServiceType(serviceTypes, "math", MathService.class);
+        RouteIndex.putServiceType(serviceTypes, "", ReportService.class);
+
+        try {
+            new RouteIndex(serviceTypes);
+
+            Assert.fail();
+        } catch (IllegalArgumentException exception) {
+            Assert.assertEquals("Duplicate route: GET math/sum.", exception.getMessage());
+        }
+    }
+}
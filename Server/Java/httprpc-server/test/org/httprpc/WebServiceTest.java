@@ -0,0 +1,65 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc;
+
+import java.util.Locale;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WebServiceTest {
+    public static class TestService extends WebService {
+        public void setVersion(String version) {
+            setResultVersion(version);
+        }
+    }
+
+    @Test
+    public void testResultVersion() {
+        RequestContext requestContext = new RequestContext(Locale.US, null, null, null);
+
+        RequestContext.set(requestContext);
+
+        try {
+            new TestService().setVersion("W/1.2-abc");
+
+            Assert.assertEquals("W/1.2-abc", requestContext.resultVersion);
+        } finally {
+            RequestContext.set(null);
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testQuotedResultVersion() {
+        RequestContext.set(new RequestContext(Locale.US, null, null, null));
+
+        try {
+            new TestService().setVersion("1\", \"2");
+        } finally {
+            RequestContext.set(null);
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testWhitespaceResultVersion() {
+        RequestContext.set(new RequestContext(Locale.US, null, null, null));
+
+        try {
+            new TestService().setVersion("1 2");
+        } finally {
+            RequestContext.set(null);
+        }
+    }
+}
@@ -14,7 +14,11 @@
 
 package org.httprpc.beans;
 
+import java.util.Arrays;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -26,4 +30,47 @@ public class BeanAdapterTest {
 
         Assert.assertEquals(Long.valueOf(date.getTime()), BeanAdapter.adapt(date));
     }
+
+    public static class Point {
+        private int x = 0;
+        private List<String> labels = null;
+
+        public int getX() {
+            return x;
+        }
+
+        public void setX(int x) {
+            this.x = x;
+        }
+
+        public List<String> getLabels() {
+            return labels;
+        }
+
+        public void setLabels(List<String> labels) {
+            this.labels = labels;
+        }
+    }
+
+    @Test
+    public void testAdaptBean() {
+        Map<String, Object> map = new LinkedHashMap<>();
+
+        map.put("x", 2L);
+        map.put("labels", Arrays.asList("a", "b"));
+
+        Point point = BeanAdapter.adapt(map, Point.class);
+
+        Assert.assertEquals(2, point.getX());
+        Assert.assertEquals(Arrays.asList("a", "b"), point.getLabels());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testAdaptInvalidBean() {
+        Map<String, Object> map = new LinkedHashMap<>();
+
+        map.put("labels", "a");
+
+        BeanAdapter.adapt(map, Point.class);
+    }
 }
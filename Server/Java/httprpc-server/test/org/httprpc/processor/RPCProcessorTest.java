@@ -0,0 +1,235 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.httprpc.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.httprpc.ServiceDispatcher;
+import org.httprpc.WebService;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RPCProcessorTest {
+    private static final String[] BASE_SERVICE = {
+        "package test;",
+        "",
+        "import org.httprpc.RPC;",
+        "import org.httprpc.WebService;",
+        "",
+        "public class BaseService extends WebService {",
+        "    @RPC(method=\"GET\", path=\"base\")",
+        "    public String getBase(String text) {",
+        "        return \"base \" + text;",
+        "    }",
+        "}"
+    };
+
+    private static final String[] TEST_SERVICE = {
+        "package test;",
+        "",
+        "import java.util.List;",
+        "import java.util.Map;",
+        "",
+        "import org.httprpc.RPC;",
+        "",
+        "public class TestService extends BaseService {",
+        "    public static class Item {",
+        "        public int id;",
+        "    }",
+        "",
+        "    public static class NestedService extends BaseService {",
+        "        @RPC(method=\"GET\", path=\"item\")",
+        "        public Item getItem(int id) {",
+        "            Item item = new Item();",
+        "            item.id = id;",
+        "            return item;",
+        "        }",
+        "    }",
+        "",
+        "    public static int count = 0;",
+        "",
+        "    @RPC(method=\"GET\", path=\"sum\")",
+        "    public static long getSum(long a, int b) {",
+        "        return a + b;",
+        "    }",
+        "",
+        "    @RPC(method=\"POST\", path=\"count\")",
+        "    public void increment(int amount) {",
+        "        count += amount;",
+        "    }",
+        "",
+        "    @RPC(method=\"GET\", path=\"join\")",
+        "    public <T> String join(List<String> values, Map<String, List<T>> map, double[] numbers, boolean... flags) {",
+        "        return values + \" \" + map.size() + \" \" + numbers.length + \" \" + flags.length;",
+        "    }",
+        "",
+        "    @RPC(method=\"GET\", path=\"say \\\"hi\\\"\\\\there\\t/\\u00e9\")",
+        "    public String getQuoted() {",
+        "        return \"quoted\";",
+        "    }",
+        "}"
+    };
+
+    @Test
+    public void testDispatcher() throws Throwable {
+        File directory = Files.createTempDirectory("rpc").toFile();
+
+        try {
+            ClassLoader classLoader = compile(directory);
+
+            ServiceDispatcher dispatcher = (ServiceDispatcher)classLoader.loadClass("test.TestService_Dispatcher").getConstructor().newInstance();
+
+            Map<String, Integer> indices = getIndices(dispatcher);
+
+            Assert.assertEquals(5, indices.size());
+
+            // Static methods with primitive parameters and results
+            int sum = indices.get("sum");
+
+            Assert.assertEquals("GET", dispatcher.getVerb(sum));
+            Assert.assertEquals(Arrays.asList("a", "b"), Arrays.asList(dispatcher.getParameterNames(sum)));
+            Assert.assertEquals("getSum", dispatcher.getMethod(sum).getName());
+            Assert.assertEquals(5L, dispatcher.invoke(sum, null, new Object[] {2L, 3}));
+
+            WebService service = (WebService)classLoader.loadClass("test.TestService").getConstructor().newInstance();
+
+            // Methods that do not return a value
+            int count = indices.get("count");
+
+            Assert.assertEquals("POST", dispatcher.getVerb(count));
+            Assert.assertNull(dispatcher.invoke(count, service, new Object[] {4}));
+            Assert.assertEquals(4, service.getClass().getField("count").get(null));
+
+            // Generic, array, and variable-length parameters
+            int join = indices.get("join");
+
+            Method method = dispatcher.getMethod(join);
+
+            Assert.assertEquals(Arrays.asList(List.class, Map.class, double[].class, boolean[].class), Arrays.asList(method.getParameterTypes()));
+            Assert.assertEquals(Arrays.asList("values", "map", "numbers", "flags"), Arrays.asList(dispatcher.getParameterNames(join)));
+
+            Assert.assertEquals("[a, b] 0 1 2", dispatcher.invoke(join, service, new Object[] {
+                Arrays.asList("a", "b"), new HashMap<>(), new double[1], new boolean[2]
+            }));
+
+            // Inherited methods
+            Assert.assertEquals("base x", dispatcher.invoke(indices.get("base"), service, new Object[] {"x"}));
+
+            // Paths that must be escaped in the generated source
+            Assert.assertEquals("quoted", dispatcher.invoke(indices.get("say \"hi\"\\there\t/\u00e9"), service, new Object[0]));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testNestedDispatcher() throws Throwable {
+        File directory = Files.createTempDirectory("rpc").toFile();
+
+        try {
+            ClassLoader classLoader = compile(directory);
+
+            ServiceDispatcher dispatcher = (ServiceDispatcher)classLoader.loadClass("test.TestService_NestedService_Dispatcher").getConstructor().newInstance();
+
+            Map<String, Integer> indices = getIndices(dispatcher);
+
+            Assert.assertEquals(2, indices.size());
+
+            WebService service = (WebService)classLoader.loadClass("test.TestService$NestedService").getConstructor().newInstance();
+
+            Object item = dispatcher.invoke(indices.get("item"), service, new Object[] {101});
+
+            Assert.assertEquals("test.TestService$Item", item.getClass().getName());
+            Assert.assertEquals(101, item.getClass().getField("id").get(item));
+
+            Assert.assertEquals("base y", dispatcher.invoke(indices.get("base"), service, new Object[] {"y"}));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static ClassLoader compile(File directory) throws IOException {
+        File sourceDirectory = new File(directory, "src/test");
+        File classDirectory = new File(directory, "classes");
+
+        sourceDirectory.mkdirs();
+        classDirectory.mkdirs();
+
+        File baseServiceFile = new File(sourceDirectory, "BaseService.java");
+        File testServiceFile = new File(sourceDirectory, "TestService.java");
+
+        Files.write(baseServiceFile.toPath(), Arrays.asList(BASE_SERVICE), StandardCharsets.UTF_8);
+        Files.write(testServiceFile.toPath(), Arrays.asList(TEST_SERVICE), StandardCharsets.UTF_8);
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+
+        Assert.assertNotNull("A JDK is required.", compiler);
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+
+        // Compile without -parameters, so that parameter names must come from the dispatchers
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"),
+                "-processor", RPCProcessor.class.getName(),
+                "-encoding", "UTF-8",
+                "-d", classDirectory.getPath());
+
+            boolean success = compiler.getTask(null, fileManager, diagnostics, options, null,
+                fileManager.getJavaFileObjects(baseServiceFile, testServiceFile)).call();
+
+            Assert.assertTrue(diagnostics.getDiagnostics().toString(), success);
+        }
+
+        return new URLClassLoader(new URL[] {classDirectory.toURI().toURL()}, RPCProcessorTest.class.getClassLoader());
+    }
+
+    private static Map<String, Integer> getIndices(ServiceDispatcher dispatcher) {
+        HashMap<String, Integer> indices = new HashMap<>();
+
+        for (int i = 0, n = dispatcher.getMethodCount(); i < n; i++) {
+            indices.put(dispatcher.getPath(i), i);
+        }
+
+        return indices;
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+
+        if (files != null) {
+            for (int i = 0; i < files.length; i++) {
+                delete(files[i]);
+            }
+        }
+
+        file.delete();
+    }
+}